@@ -0,0 +1,4 @@
+@echo off
+rem Benchmarks; run compile.bat first so bin is up to date
+javac -cp "bin;lib\*" -d bench\bin bench\src\fitlife\bench\Benchmarks.java
+java -cp "bin;bench\bin;lib\*" fitlife.bench.Benchmarks %*
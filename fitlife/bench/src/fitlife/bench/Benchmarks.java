@@ -0,0 +1,226 @@
+package fitlife.bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import fitlife.ai.HealthMetrics;
+import fitlife.ai.MetricsExtractor;
+import fitlife.ai.PromptBuilder;
+import fitlife.core.CalorieTracker;
+import fitlife.core.StepsTracker;
+import fitlife.core.Tracker;
+import fitlife.core.WaterTracker;
+import fitlife.data.HistoryGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks for the report, metrics, meal logging and prompt paths over 1, 5 and 20 years
+ * of generated history.
+ *
+ * Each data set runs in its own JVM started in the data set's directory, because the
+ * trackers read the logs in the working directory. Every benchmark is warmed up, then
+ * measured for a number of timed iterations; the result is the average time per call with
+ * a 99.9% confidence interval. Results are written as JSON in the layout JMH uses, so the
+ * usual JMH result viewers and regression scripts can read them.
+ *
+ * Usage:
+ *   java -cp bin;bench\bin;lib\* fitlife.bench.Benchmarks [options] [benchmark regex]
+ *     -y 1,5,20      years of history per data set
+ *     -wi 3 -i 5     warmup and measurement iterations
+ *     -r 1           seconds per iteration
+ *     -o file.json   where to write the results (default bench-results.json)
+ */
+public final class Benchmarks {
+
+    private static final long SEED = 42;
+    private static final LocalDate END = LocalDate.of(2025, 12, 31);
+    private static final List<String> FOODS = HistoryGenerator.foodNames();
+    private static final String QUERY = "How can I improve my energy levels?";
+
+    // two-sided Student t for 99.9%, by degrees of freedom; the last value is used beyond
+    private static final double[] T_999 = {
+        636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.291
+    };
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    // keeps results reachable so the JIT cannot drop the calls
+    private static volatile int sink;
+
+    private final Map<String, IntFunction<Object>> benchmarks = new LinkedHashMap<>();
+
+    private Benchmarks(int years) {
+        // rotating inputs, so no call is answered from a cache the previous call filled
+        int weeks = years * 52 - 1;
+        String[] weekStarts = new String[weeks];
+        for (int i = 0; i < weeks; i++) weekStarts[i] = END.minusWeeks(i + 1).toString();
+        HealthMetrics metrics = MetricsExtractor.extractMetrics(END.minusDays(29), END);
+        PromptBuilder prompts = new PromptBuilder(1500);
+
+        benchmarks.put("weeklySummary", i -> Tracker.generateWeeklySummary(weekStarts[i % weeks]));
+        benchmarks.put("stepsWeeklyReport", i -> StepsTracker.generateWeeklyReport(weekStarts[i % weeks]));
+        benchmarks.put("waterWeeklyReport", i -> WaterTracker.generateWeeklyReport(weekStarts[i % weeks]));
+        benchmarks.put("extractMetrics30Days", i -> MetricsExtractor.extractMetrics(
+                END.minusDays(29 + i % 7), END.minusDays(i % 7)));
+        benchmarks.put("extractMetricsAllYears", i -> MetricsExtractor.extractMetrics(
+                END.minusYears(years).plusDays(1), END));
+        // known food: calories come from the food map
+        benchmarks.put("calorieTrackerLookup", i -> new CalorieTracker(
+                FOODS.get(i % FOODS.size()), 100 + i % 200, "Lunch").getCalories());
+        // calories given: the food's calories per gram are saved to foods.txt
+        benchmarks.put("calorieTrackerSaveFood", i -> new CalorieTracker(
+                FOODS.get(i % FOODS.size()), 100 + i % 200, 150 + i % 300, "Lunch").getCalories());
+        benchmarks.put("buildPrompt", i -> prompts.build(metrics, QUERY).getText());
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<Integer> years = Arrays.asList(1, 5, 20);
+        int warmups = 3;
+        int iterations = 5;
+        double seconds = 1;
+        Path out = Paths.get("bench-results.json");
+        Pattern filter = Pattern.compile(".*");
+        boolean fork = false;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-y":
+                    years = new ArrayList<>();
+                    for (String y : args[++a].split(",")) years.add(Integer.parseInt(y.trim()));
+                    break;
+                case "-wi": warmups = Integer.parseInt(args[++a]); break;
+                case "-i": iterations = Integer.parseInt(args[++a]); break;
+                case "-r": seconds = Double.parseDouble(args[++a]); break;
+                case "-o": out = Paths.get(args[++a]); break;
+                case "--fork": fork = true; break;
+                default: filter = Pattern.compile(args[a]); break;
+            }
+        }
+
+        if (fork) {
+            // child: measure the data set in the working directory, results on stdout
+            JsonArray results = new Benchmarks(years.get(0)).run(years.get(0), filter, warmups, iterations, seconds);
+            System.out.println(gson.toJson(results));
+            return;
+        }
+
+        JsonArray all = new JsonArray();
+        for (int y : years) {
+            Path dir = Files.createTempDirectory("fitlife-bench-" + y + "y-");
+            HistoryGenerator.writeUser(dir, y, END, SEED, 0, 0);
+            System.err.printf(Locale.ROOT, "# %d year(s) of history in %s%n", y, dir);
+            List<String> cmd = new ArrayList<>(List.of(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Benchmarks.class.getName(), "--fork", "-y", Integer.toString(y),
+                    "-wi", Integer.toString(warmups), "-i", Integer.toString(iterations),
+                    "-r", Double.toString(seconds), filter.pattern()));
+            Process p = new ProcessBuilder(cmd).directory(dir.toFile())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            String json;
+            try (InputStream in = p.getInputStream()) {
+                json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (p.waitFor() != 0) throw new IOException("Benchmark fork for " + y + " year(s) failed");
+            for (JsonElement e : JsonParser.parseString(json).getAsJsonArray()) all.add(e);
+        }
+        Files.writeString(out, gson.toJson(all), StandardCharsets.UTF_8);
+        System.err.println("# Results written to " + out.toAbsolutePath());
+    }
+
+    private JsonArray run(int years, Pattern filter, int warmups, int iterations, double seconds) {
+        JsonArray results = new JsonArray();
+        for (Map.Entry<String, IntFunction<Object>> b : benchmarks.entrySet()) {
+            if (!filter.matcher(b.getKey()).find()) continue;
+            long nanos = (long) (seconds * 1e9);
+            for (int w = 1; w <= warmups; w++) {
+                System.err.printf(Locale.ROOT, "%s [%dy] warmup %d: %.3f us/op%n", b.getKey(), years, w, iteration(b.getValue(), nanos));
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = iteration(b.getValue(), nanos);
+                System.err.printf(Locale.ROOT, "%s [%dy] iteration %d: %.3f us/op%n", b.getKey(), years, i + 1, scores[i]);
+            }
+            results.add(result(b.getKey(), years, warmups, iterations, seconds, scores));
+        }
+        return results;
+    }
+
+    // Average microseconds per call over one timed iteration of at least one call
+    private static double iteration(IntFunction<Object> op, long nanos) {
+        long start = System.nanoTime();
+        long deadline = start + nanos;
+        int calls = 0;
+        int h = 0;
+        long now;
+        do {
+            h += op.apply(calls++).hashCode();
+            now = System.nanoTime();
+        } while (now < deadline);
+        sink += h;
+        return (now - start) / 1e3 / calls;
+    }
+
+    private static JsonObject result(String name, int years, int warmups, int iterations, double seconds, double[] scores) {
+        double mean = 0;
+        for (double s : scores) mean += s;
+        mean /= scores.length;
+        double error = Double.NaN;
+        if (scores.length > 1) {
+            double var = 0;
+            for (double s : scores) var += (s - mean) * (s - mean);
+            double sd = Math.sqrt(var / (scores.length - 1));
+            error = T_999[Math.min(scores.length - 2, T_999.length - 1)] * sd / Math.sqrt(scores.length);
+        }
+
+        JsonObject metric = new JsonObject();
+        metric.addProperty("score", mean);
+        metric.addProperty("scoreError", error);
+        JsonArray confidence = new JsonArray();
+        confidence.add(mean - (Double.isNaN(error) ? 0 : error));
+        confidence.add(mean + (Double.isNaN(error) ? 0 : error));
+        metric.add("scoreConfidence", confidence);
+        metric.addProperty("scoreUnit", "us/op");
+        JsonArray raw = new JsonArray();
+        JsonArray fork = new JsonArray();
+        for (double s : scores) fork.add(s);
+        raw.add(fork);
+        metric.add("rawData", raw);
+
+        JsonObject params = new JsonObject();
+        params.addProperty("years", Integer.toString(years));
+
+        JsonObject o = new JsonObject();
+        o.addProperty("jvm", Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        o.addProperty("jdkVersion", System.getProperty("java.version"));
+        o.addProperty("benchmark", Benchmarks.class.getName() + "." + name);
+        o.addProperty("mode", "avgt");
+        o.addProperty("threads", 1);
+        o.addProperty("forks", 1);
+        o.addProperty("warmupIterations", warmups);
+        o.addProperty("warmupTime", seconds + " s");
+        o.addProperty("measurementIterations", iterations);
+        o.addProperty("measurementTime", seconds + " s");
+        o.add("params", params);
+        o.add("primaryMetric", metric);
+        o.add("secondaryMetrics", new JsonObject());
+        return o;
+    }
+}
@@ -0,0 +1,234 @@
+package fitlife.bench;
+
+import fitlife.data.HistoryGenerator;
+import fitlife.data.UserStore;
+import fitlife.server.ApiServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test for the HTTP API: concurrent clients send a mix of logging, report and metrics
+ * requests for a fixed time, then throughput and latency percentiles are printed per
+ * endpoint.
+ *
+ * By default the test is self-contained: it writes seeded history for a number of users
+ * with {@link HistoryGenerator}, starts an {@link ApiServer} over it on a free port and
+ * runs against that. With -url it runs against a server that is already up, which should
+ * serve a profiles directory written by HistoryGenerator so the users exist. AI analysis
+ * is left out, as it calls the model's API.
+ *
+ * Usage:
+ *   java -cp bin;bench\bin;lib\* fitlife.bench.LoadTest [options]
+ *     -c 64          concurrent clients
+ *     -d 30 -w 5     seconds measured, after seconds of warmup
+ *     -users 20      users; requests are spread over them evenly
+ *     -years 2       years of history per user (self-contained only)
+ *     -url http://host:8080 [-token t]   run against a running server
+ */
+public final class LoadTest {
+
+    private static final LocalDate END = LocalDate.of(2025, 12, 31);
+    private static final String[] CATEGORIES = {"Breakfast", "Lunch", "Snack", "Dinner"};
+
+    // request kinds and their share of the mix, in percent
+    private static final String[] KINDS = {"weekly", "steps report", "metrics", "log meal", "log steps", "log water"};
+    private static final int[] SHARE = {40, 15, 10, 15, 10, 10};
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+    private final String base;
+    private final String token;
+    private final int users;
+    private final int historyDays;
+    private final List<String> foods = HistoryGenerator.foodNames();
+
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    // Latencies in nanoseconds and error counts of one client, per request kind
+    private static final class Samples {
+        final long[][] nanos = new long[KINDS.length][1024];
+        final int[] counts = new int[KINDS.length];
+        final int[] errors = new int[KINDS.length];
+
+        void add(int kind, long latency, boolean ok) {
+            if (!ok) errors[kind]++;
+            if (counts[kind] == nanos[kind].length) nanos[kind] = Arrays.copyOf(nanos[kind], counts[kind] * 2);
+            nanos[kind][counts[kind]++] = latency;
+        }
+    }
+
+    private LoadTest(String base, String token, int users, int years) {
+        this.base = base;
+        this.token = token;
+        this.users = users;
+        this.historyDays = Math.max(7, years * 365);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = 64;
+        int seconds = 30;
+        int warmup = 5;
+        int users = 20;
+        int years = 2;
+        String url = null;
+        String token = null;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-c": clients = Integer.parseInt(args[++a]); break;
+                case "-d": seconds = Integer.parseInt(args[++a]); break;
+                case "-w": warmup = Integer.parseInt(args[++a]); break;
+                case "-users": users = Integer.parseInt(args[++a]); break;
+                case "-years": years = Integer.parseInt(args[++a]); break;
+                case "-url": url = args[++a]; break;
+                case "-token": token = args[++a]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[a]);
+            }
+        }
+
+        ApiServer server = null;
+        if (url == null) {
+            Path root = Files.createTempDirectory("fitlife-load-");
+            // a single user is written to the directory given, several to user-0001, ... in it
+            Path data = (users == 1) ? root.resolve("user-0001") : root;
+            System.err.println("# " + HistoryGenerator.generate(data, users, years, END, 42, 0.001, 0.05));
+            server = new ApiServer(new InetSocketAddress("127.0.0.1", 0), new UserStore(root), null,
+                    Runtime.getRuntime().availableProcessors() * 4);
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+            System.err.println("# Server on " + url + " over " + root);
+        }
+
+        LoadTest test = new LoadTest(url.replaceAll("/+$", ""), token, users, years);
+        try {
+            test.run(clients, warmup, seconds);
+        } finally {
+            if (server != null) server.stop(0);
+        }
+    }
+
+    private void run(int clients, int warmup, int seconds) throws InterruptedException {
+        List<Samples> all = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Samples samples = new Samples();
+            all.add(samples);
+            Thread t = new Thread(() -> client(samples), "load-client-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        System.err.printf(Locale.ROOT, "# %d clients, %d s warmup, %d s measured%n", clients, warmup, seconds);
+        Thread.sleep(warmup * 1000L);
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        recording = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread t : threads) t.join(10_000);
+        report(all, elapsed);
+    }
+
+    private void client(Samples samples) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (running) {
+            int kind = pick(rnd.nextInt(100));
+            HttpRequest request = request(kind, rnd);
+            long t0 = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                ok = response.statusCode() / 100 == 2;
+            } catch (Exception e) {
+                ok = false;
+            }
+            long latency = System.nanoTime() - t0;
+            if (recording) samples.add(kind, latency, ok);
+        }
+    }
+
+    private static int pick(int percent) {
+        for (int k = 0; k < SHARE.length; k++) {
+            percent -= SHARE[k];
+            if (percent < 0) return k;
+        }
+        return SHARE.length - 1;
+    }
+
+    private HttpRequest request(int kind, ThreadLocalRandom rnd) {
+        String user = String.format(Locale.ROOT, "user-%04d", rnd.nextInt(users) + 1);
+        LocalDate day = END.minusDays(rnd.nextInt(historyDays - 6));
+        String json = null;
+        String path;
+        switch (kind) {
+            case 0: path = "/api/reports/weekly?start=" + day; break;
+            case 1: path = "/api/reports/steps?start=" + day; break;
+            case 2: path = "/api/metrics?from=" + day.minusDays(29) + "&to=" + day; break;
+            case 3:
+                path = "/api/meals";
+                json = String.format(Locale.ROOT, "{\"name\":\"%s\",\"grams\":%d,\"category\":\"%s\",\"date\":\"%s\"}",
+                        foods.get(rnd.nextInt(foods.size())), 50 + rnd.nextInt(300), CATEGORIES[rnd.nextInt(CATEGORIES.length)], END);
+                break;
+            case 4:
+                path = "/api/steps";
+                json = String.format(Locale.ROOT, "{\"steps\":%d,\"date\":\"%s\"}", rnd.nextInt(15000), END);
+                break;
+            default:
+                path = "/api/water";
+                json = String.format(Locale.ROOT, "{\"liters\":%.2f,\"date\":\"%s\"}", 0.25 + rnd.nextDouble(), END);
+                break;
+        }
+        String uri = base + path + (path.contains("?") ? "&" : "?") + "user=" + user;
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(30));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        if (json == null) return b.GET().build();
+        return b.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static void report(List<Samples> all, double seconds) {
+        System.out.printf(Locale.ROOT, "%-14s %9s %7s %9s %9s %9s %9s %9s%n",
+                "request", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        long total = 0;
+        long totalErrors = 0;
+        for (int k = 0; k < KINDS.length; k++) {
+            int n = 0;
+            int errors = 0;
+            for (Samples s : all) {
+                n += s.counts[k];
+                errors += s.errors[k];
+            }
+            long[] nanos = new long[n];
+            int at = 0;
+            for (Samples s : all) {
+                System.arraycopy(s.nanos[k], 0, nanos, at, s.counts[k]);
+                at += s.counts[k];
+            }
+            Arrays.sort(nanos);
+            System.out.printf(Locale.ROOT, "%-14s %9d %7d %9.0f %9.2f %9.2f %9.2f %9.2f%n",
+                    KINDS[k], n, errors, n / seconds,
+                    percentile(nanos, 0.50), percentile(nanos, 0.90), percentile(nanos, 0.99), percentile(nanos, 1.0));
+            total += n;
+            totalErrors += errors;
+        }
+        System.out.printf(Locale.ROOT, "%-14s %9d %7d %9.0f%n", "all", total, totalErrors, total / seconds);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return Double.NaN;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+}
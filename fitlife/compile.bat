@@ -1,4 +1,4 @@
 @echo off
-javac -cp "lib\*" -d bin src\FitLifeGUI.java src\Main.java src\fitlife\config\GeminiConfig.java src\fitlife\ai\MetricsExtractor.java src\fitlife\ai\GeminiAnalyzer.java src\fitlife\core\CalorieTracker.java src\fitlife\core\StepsTracker.java src\fitlife\core\WaterTracker.java src\fitlife\core\Tracker.java src\fitlife\logic\BMITracker.java src\fitlife\logic\Calculable.java src\fitlife\data\Savable.java
+javac -cp "lib\*" -d bin src\FitLifeGUI.java src\Main.java src\fitlife\config\GeminiConfig.java src\fitlife\ai\MetricsExtractor.java src\fitlife\ai\GeminiAnalyzer.java src\fitlife\core\CalorieTracker.java src\fitlife\core\StepsTracker.java src\fitlife\core\WaterTracker.java src\fitlife\core\Tracker.java src\fitlife\logic\BMITracker.java src\fitlife\logic\Calculable.java src\fitlife\data\Savable.java src\fitlife\data\NameDictionary.java src\fitlife\data\BinaryLog.java src\fitlife\data\LogMigrator.java src\fitlife\data\MappedLineScanner.java src\fitlife\data\DateIndex.java src\fitlife\data\FitLifeRepository.java src\fitlife\data\WriteBehindQueue.java src\fitlife\config\StorageConfig.java src\fitlife\data\FoodJournal.java src\fitlife\data\FoodIndex.java src\fitlife\ai\ResponseCache.java src\fitlife\ai\AnalysisService.java src\fitlife\ai\PartialAnalysis.java src\fitlife\ai\RetryPolicy.java src\fitlife\ai\RateLimiter.java src\fitlife\ai\CircuitBreaker.java src\fitlife\ai\PromptBuilder.java src\fitlife\ai\HealthAnalyzer.java src\fitlife\ai\LocalAnalyzer.java src\fitlife\ai\HealthMetrics.java src\fitlife\data\TopK.java src\fitlife\data\CountMinSketch.java src\fitlife\data\CsvLine.java src\fitlife\data\HistoryGenerator.java src\fitlife\data\UserData.java src\fitlife\data\UserStore.java src\fitlife\config\ServerConfig.java src\fitlife\server\ApiServer.java src\fitlife\metrics\Counter.java src\fitlife\metrics\CounterMBean.java src\fitlife\metrics\Metrics.java src\fitlife\metrics\Timer.java src\fitlife\metrics\TimerMBean.java
 echo Compilation complete
 pause
\ No newline at end of file
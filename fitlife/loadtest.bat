@@ -0,0 +1,4 @@
+@echo off
+rem Load test for the HTTP API; run compile.bat first so bin is up to date
+javac -cp "bin;lib\*" -d bench\bin bench\src\fitlife\bench\LoadTest.java
+java -cp "bin;bench\bin;lib\*" fitlife.bench.LoadTest %*
@@ -0,0 +1,3 @@
+@echo off
+rem HTTP API server; run compile.bat first so bin is up to date
+java -cp "bin;lib\*" fitlife.server.ApiServer %*
@@ -3,26 +3,51 @@ import fitlife.core.StepsTracker;
 import fitlife.core.WaterTracker;
 import fitlife.core.Tracker;
 import fitlife.logic.BMITracker;
-import fitlife.config.GeminiConfig;
 import fitlife.ai.MetricsExtractor;
-import fitlife.ai.GeminiAnalyzer;
+import fitlife.ai.AnalysisService;
+import fitlife.config.StorageConfig;
+import fitlife.data.FitLifeRepository;
+import fitlife.data.UserData;
+import fitlife.data.UserStore;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowEvent;
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class FitLifeGUI extends JFrame {
+    private static final long serialVersionUID = 1L;
+
+    private static final String MEALS_CARD = "🍽️ Meals Today";
+    private static final String STEPS_CARD = "👟 Steps Today";
+    private static final String WATER_CARD = "💧 Water Today";
+    private static final String RECENT_CARD = "📊 Recent Activity";
+    private static final Timer DASHBOARD_TIMER = Metrics.timer("FitLifeGUI.loadDashboard");
+
     private JPanel dashboardPanel;
     private JScrollPane dashboardScroll;
+    private JLabel dashboardDate;
+    // card text areas by title, so a refresh only touches the cards whose text changed
+    private final transient Map<String, JTextArea> dashboardCards = new HashMap<>();
+    private transient SwingWorker<Map<String, String>, Void> dashboardLoader;
+    private boolean dashboardStale;
+    // whose data is shown and logged; every tracker, report and analysis goes through it
+    private transient UserData user = UserData.local();
 
     public FitLifeGUI() {
         setTitle("FitLife - AI-Powered Health Tracker");
@@ -31,6 +56,15 @@ public class FitLifeGUI extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setResizable(true);
 
+        String startUser = StorageConfig.getUser();
+        if (startUser != null) {
+            try {
+                user = UserStore.get().user(startUser);
+            } catch (Exception e) {
+                System.err.println("Cannot open profile " + startUser + ": " + e.getMessage());
+            }
+        }
+
         // Main container with BorderLayout
         JPanel mainPanel = new JPanel(new BorderLayout(0, 0));
         mainPanel.setBackground(new Color(245, 245, 250));
@@ -57,6 +91,9 @@ public class FitLifeGUI extends JFrame {
         mainPanel.add(contentPanel, BorderLayout.CENTER);
 
         add(mainPanel);
+
+        // Cards start as placeholders; history is loaded in the background
+        refreshDashboard();
     }
 
     private JPanel createHeaderPanel() {
@@ -80,9 +117,73 @@ public class FitLifeGUI extends JFrame {
         titlePanel.add(subtitleLabel);
 
         header.add(titlePanel, BorderLayout.WEST);
+        header.add(createProfilePanel(), BorderLayout.EAST);
         return header;
     }
 
+    // Profile picker: the working directory's files, each profile on disk, or a new one
+    private JPanel createProfilePanel() {
+        String local = "This folder";
+        String create = "➕ New profile...";
+        JComboBox<String> profiles = new JComboBox<>();
+        profiles.addItem(local);
+        try {
+            for (String id : UserStore.get().users()) profiles.addItem(id);
+        } catch (Exception e) {
+            // ignore - only the working directory is offered
+        }
+        if (!user.getId().isEmpty() && ((DefaultComboBoxModel<String>) profiles.getModel()).getIndexOf(user.getId()) < 0) {
+            profiles.addItem(user.getId());
+        }
+        profiles.addItem(create);
+
+        // selecting from code fires the listener too; it only reacts to the user
+        boolean[] updating = {false};
+        Runnable showCurrent = () -> {
+            updating[0] = true;
+            profiles.setSelectedItem(user.getId().isEmpty() ? local : user.getId());
+            updating[0] = false;
+        };
+        showCurrent.run();
+
+        profiles.addActionListener(e -> {
+            Object picked = profiles.getSelectedItem();
+            if (updating[0] || picked == null) return;
+            String id = local.equals(picked) ? "" : picked.toString();
+            if (create.equals(picked)) {
+                id = JOptionPane.showInputDialog(this, "Profile name (letters, digits, '-' or '_'):");
+                if (id == null || id.trim().isEmpty()) {
+                    showCurrent.run();
+                    return;
+                }
+            }
+            try {
+                UserData next = id.isEmpty() ? UserData.local() : UserStore.get().user(id);
+                if (!next.getId().isEmpty() && ((DefaultComboBoxModel<String>) profiles.getModel()).getIndexOf(next.getId()) < 0) {
+                    updating[0] = true;
+                    profiles.insertItemAt(next.getId(), profiles.getItemCount() - 1);
+                    updating[0] = false;
+                }
+                if (next != user) {
+                    user = next;
+                    refreshDashboard();
+                }
+            } catch (Exception ex) {
+                showError("Error: " + ex.getMessage());
+            }
+            showCurrent.run();
+        });
+
+        JLabel label = new JLabel("Profile:");
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        label.setForeground(Color.WHITE);
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 15));
+        panel.setBackground(new Color(41, 128, 185));
+        panel.add(label);
+        panel.add(profiles);
+        return panel;
+    }
+
     private JPanel createDashboardPanel() {
         JPanel dashboard = new JPanel();
         dashboard.setLayout(new BoxLayout(dashboard, BoxLayout.Y_AXIS));
@@ -90,26 +191,26 @@ public class FitLifeGUI extends JFrame {
         dashboard.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
 
         // Today's Date
-        JLabel dateLabel = new JLabel("📅 " + LocalDate.now().format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy")));
-        dateLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
-        dateLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        dashboard.add(dateLabel);
+        dashboardDate = new JLabel(formatDashboardDate(LocalDate.now()));
+        dashboardDate.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        dashboardDate.setAlignmentX(Component.LEFT_ALIGNMENT);
+        dashboard.add(dashboardDate);
         dashboard.add(Box.createVerticalStrut(15));
 
         // Meals Today
-        dashboard.add(createDashboardCard("🍽️ Meals Today", getTodaysMeals()));
+        dashboard.add(createDashboardCard(MEALS_CARD, "Loading..."));
         dashboard.add(Box.createVerticalStrut(10));
 
         // Steps Today
-        dashboard.add(createDashboardCard("👟 Steps Today", getTodaysSteps()));
+        dashboard.add(createDashboardCard(STEPS_CARD, "Loading..."));
         dashboard.add(Box.createVerticalStrut(10));
 
         // Water Today
-        dashboard.add(createDashboardCard("💧 Water Today", getTodaysWater()));
+        dashboard.add(createDashboardCard(WATER_CARD, "Loading..."));
         dashboard.add(Box.createVerticalStrut(10));
 
         // Recent Activity
-        dashboard.add(createDashboardCard("📊 Recent Activity", getRecentActivity()));
+        dashboard.add(createDashboardCard(RECENT_CARD, "Loading..."));
 
         dashboard.add(Box.createVerticalGlue());
 
@@ -142,6 +243,7 @@ public class FitLifeGUI extends JFrame {
 
         card.add(titleLabel, BorderLayout.NORTH);
         card.add(new JScrollPane(contentArea), BorderLayout.CENTER);
+        dashboardCards.put(title, contentArea);
 
         return card;
     }
@@ -163,9 +265,10 @@ public class FitLifeGUI extends JFrame {
         JButton aiBtn = createStyledButton("🤖 AI Analysis", btnColor, hoverColor);
         JButton exitBtn = createStyledButton("❌ Exit", new Color(231, 76, 60), new Color(192, 57, 43));
 
-        mealBtn.addActionListener(e -> { logMeal(); refreshDashboard(); });
-        stepsBtn.addActionListener(e -> { logSteps(); refreshDashboard(); });
-        waterBtn.addActionListener(e -> { logWater(); refreshDashboard(); });
+        // each log action refreshes the dashboard once its entry is saved
+        mealBtn.addActionListener(e -> logMeal());
+        stepsBtn.addActionListener(e -> logSteps());
+        waterBtn.addActionListener(e -> logWater());
         bmiBtn.addActionListener(e -> runBMI());
         weeklyBtn.addActionListener(e -> showWeeklySummary());
         aiBtn.addActionListener(e -> analyzeWithAI());
@@ -206,82 +309,106 @@ public class FitLifeGUI extends JFrame {
     }
 
     private void refreshDashboard() {
-        // Recreate the dashboard panel
-        dashboardPanel = createDashboardPanel();
-        // Update the scroll pane's viewport with the new panel
-        dashboardScroll.setViewportView(dashboardPanel);
-        // Repaint the scroll pane
-        dashboardScroll.repaint();
+        // One load at a time; a refresh requested meanwhile runs once it finishes
+        if (dashboardLoader != null && !dashboardLoader.isDone()) {
+            dashboardStale = true;
+            return;
+        }
+        dashboardStale = false;
+        LocalDate today = LocalDate.now();
+        UserData shown = user;
+        dashboardLoader = new SwingWorker<Map<String, String>, Void>() {
+            @Override
+            protected Map<String, String> doInBackground() {
+                long t0 = System.nanoTime();
+                try {
+                    return loadDashboardCards(shown, today);
+                } finally {
+                    DASHBOARD_TIMER.recordSince(t0);
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    // a profile switched meanwhile has its own refresh queued
+                    if (shown == user) updateDashboard(today, get());
+                } catch (Exception e) {
+                    // keep the cards as they are
+                }
+                if (dashboardStale) refreshDashboard();
+            }
+        };
+        dashboardLoader.execute();
     }
 
-    private String getTodaysMeals() {
+    // Runs off the EDT: one snapshot of the repository, formatted into card texts
+    private Map<String, String> loadDashboardCards(UserData shown, LocalDate today) {
+        Map<String, String> cards = new HashMap<>();
         try {
-            String today = LocalDate.now().toString();
-            List<String> meals = Files.readAllLines(Paths.get("meals.txt"));
-            List<String> todaysMeals = meals.stream()
-                    .filter(line -> line.contains(today))
-                    .collect(Collectors.toList());
-
-            if (todaysMeals.isEmpty()) {
-                return "No meals logged yet.\n\nTip: Log a meal to start tracking!";
-            }
-            return String.join("\n", todaysMeals.stream().limit(5).collect(Collectors.toList()));
+            FitLifeRepository.DaySnapshot snapshot = shown.repository().snapshot(today, 2);
+            cards.put(MEALS_CARD, getTodaysMeals(snapshot.meals()));
+            cards.put(STEPS_CARD, getTodaysSteps(snapshot.steps()));
+            cards.put(WATER_CARD, getTodaysWater(snapshot.water()));
+            cards.put(RECENT_CARD, getRecentActivity(snapshot.recentMeals(), snapshot.recentSteps()));
         } catch (Exception e) {
-            return "No data available";
+            cards.put(MEALS_CARD, "No data available");
+            cards.put(STEPS_CARD, "No data available");
+            cards.put(WATER_CARD, "No data available");
+            cards.put(RECENT_CARD, "No recent activity");
         }
+        return cards;
     }
 
-    private String getTodaysSteps() {
-        try {
-            String today = LocalDate.now().toString();
-            List<String> steps = Files.readAllLines(Paths.get("steps.txt"));
-            List<String> todaysSteps = steps.stream()
-                    .filter(line -> line.contains(today))
-                    .collect(Collectors.toList());
-
-            if (todaysSteps.isEmpty()) {
-                return "No steps logged yet.\n\nDaily goal: 10,000 steps";
+    // On the EDT: push only the cards whose text changed
+    private void updateDashboard(LocalDate today, Map<String, String> cards) {
+        String date = formatDashboardDate(today);
+        if (!date.equals(dashboardDate.getText())) dashboardDate.setText(date);
+        for (Map.Entry<String, String> card : cards.entrySet()) {
+            JTextArea area = dashboardCards.get(card.getKey());
+            if (area != null && !card.getValue().equals(area.getText())) {
+                area.setText(card.getValue());
+                area.setCaretPosition(0);
             }
-            return String.join("\n", todaysSteps);
-        } catch (Exception e) {
-            return "No data available";
         }
     }
 
-    private String getTodaysWater() {
-        try {
-            String today = LocalDate.now().toString();
-            List<String> water = Files.readAllLines(Paths.get("water.txt"));
-            List<String> todaysWater = water.stream()
-                    .filter(line -> line.contains(today))
-                    .collect(Collectors.toList());
-
-            if (todaysWater.isEmpty()) {
-                return "No water logged yet.\n\nDaily goal: 2-3 liters";
-            }
-            return String.join("\n", todaysWater);
-        } catch (Exception e) {
-            return "No data available";
+    private String formatDashboardDate(LocalDate day) {
+        return "📅 " + day.format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy"));
+    }
+
+    private String getTodaysMeals(List<String> todaysMeals) {
+        if (todaysMeals.isEmpty()) {
+            return "No meals logged yet.\n\nTip: Log a meal to start tracking!";
+        }
+        return String.join("\n", todaysMeals.stream().limit(5).collect(Collectors.toList()));
+    }
+
+    private String getTodaysSteps(List<String> todaysSteps) {
+        if (todaysSteps.isEmpty()) {
+            return "No steps logged yet.\n\nDaily goal: 10,000 steps";
         }
+        return String.join("\n", todaysSteps);
     }
 
-    private String getRecentActivity() {
+    private String getTodaysWater(List<String> todaysWater) {
+        if (todaysWater.isEmpty()) {
+            return "No water logged yet.\n\nDaily goal: 2-3 liters";
+        }
+        return String.join("\n", todaysWater);
+    }
+
+    private String getRecentActivity(List<String> recentMeals, List<String> recentSteps) {
         StringBuilder activity = new StringBuilder();
-        try {
-            // Last 3 meals
-            List<String> meals = Files.readAllLines(Paths.get("meals.txt"));
-            activity.append("Recent meals:\n");
-            meals.stream().skip(Math.max(0, meals.size() - 2)).forEach(m -> activity.append("  • ").append(m).append("\n"));
+        // Last 2 meals
+        activity.append("Recent meals:\n");
+        recentMeals.forEach(m -> activity.append("  • ").append(m).append("\n"));
 
-            // Last 3 steps entries
-            List<String> steps = Files.readAllLines(Paths.get("steps.txt"));
-            activity.append("\nRecent steps:\n");
-            steps.stream().skip(Math.max(0, steps.size() - 2)).forEach(s -> activity.append("  • ").append(s).append("\n"));
+        // Last 2 steps entries
+        activity.append("\nRecent steps:\n");
+        recentSteps.forEach(s -> activity.append("  • ").append(s).append("\n"));
 
-            return activity.toString();
-        } catch (Exception e) {
-            return "No recent activity";
-        }
+        return activity.toString();
     }
 
     private void logMeal() {
@@ -290,12 +417,16 @@ public class FitLifeGUI extends JFrame {
         JTextField qtyField = new JTextField();
         JTextField categoryField = new JTextField();
         JTextField caloriesField = new JTextField();
+        JComboBox<String> knownFoods = new JComboBox<>();
+        attachFoodSuggestions(mealField, knownFoods);
 
         JPanel p = new JPanel(new GridLayout(0, 2, 5, 5));
         p.add(new JLabel("Date (yyyy-MM-dd, empty = today):"));
         p.add(dateField);
         p.add(new JLabel("Meal name:"));
         p.add(mealField);
+        p.add(new JLabel("Known foods:"));
+        p.add(knownFoods);
         p.add(new JLabel("Category:"));
         p.add(categoryField);
         p.add(new JLabel("Quantity (grams):"));
@@ -320,31 +451,69 @@ public class FitLifeGUI extends JFrame {
 
         try {
             double grams = Double.parseDouble(qty);
-            CalorieTracker ct;
-
-            if (!date.isEmpty()) {
-                LocalDate d = LocalDate.parse(date);
-                if (!cal.isEmpty()) {
-                    ct = new CalorieTracker(d, name, grams, Integer.parseInt(cal), category);
-                } else {
-                    ct = new CalorieTracker(d, name, grams, category);
-                }
-            } else {
-                if (!cal.isEmpty()) {
-                    ct = new CalorieTracker(name, grams, Integer.parseInt(cal), category);
-                } else {
-                    ct = new CalorieTracker(name, grams, category);
-                }
-            }
-
-            ct.saveToFile();
-            showInfo("✅ Meal logged successfully.");
+            LocalDate d = date.isEmpty() ? LocalDate.now() : LocalDate.parse(date);
+            // without calories they are looked up in the profile's known foods
+            int calories = cal.isEmpty() ? 0 : Integer.parseInt(cal);
+            UserData owner = user;
+            saveInBackground("✅ Meal logged successfully.", () -> {
+                new CalorieTracker(owner, d, name, grams, calories, category).saveToFile();
+                return null;
+            });
 
         } catch (Exception ex) {
             showError("Error: " + ex.getMessage());
         }
     }
 
+    // Fill the combo box with known foods matching the meal name as it is typed;
+    // picking one copies it into the field
+    private void attachFoodSuggestions(JTextField mealField, JComboBox<String> knownFoods) {
+        boolean[] updating = {false};
+        boolean[] ready = {false};
+        UserData owner = user;
+        knownFoods.setEnabled(false);
+
+        Runnable refresh = () -> {
+            if (updating[0] || !ready[0]) return;
+            List<String> matches = CalorieTracker.suggestFoods(owner, mealField.getText(), 8);
+            updating[0] = true;
+            knownFoods.setModel(new DefaultComboBoxModel<>(matches.toArray(new String[0])));
+            knownFoods.setSelectedIndex(-1);
+            knownFoods.setEnabled(!matches.isEmpty());
+            updating[0] = false;
+        };
+
+        mealField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+        });
+
+        knownFoods.addActionListener(e -> {
+            Object picked = knownFoods.getSelectedItem();
+            if (updating[0] || picked == null) return;
+            updating[0] = true;
+            mealField.setText(picked.toString());
+            updating[0] = false;
+        });
+
+        // the foods journal is replayed and indexed off the EDT; suggestions start once it is
+        // ready, for whatever has been typed by then
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                owner.foods().prepareSearch();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                ready[0] = true;
+                refresh.run();
+            }
+        }.execute();
+    }
+
     private void logSteps() {
         JTextField dateField = new JTextField();
         JTextField stepsField = new JTextField();
@@ -365,8 +534,12 @@ public class FitLifeGUI extends JFrame {
 
             if (date.isEmpty()) date = LocalDate.now().toString();
 
-            StepsTracker.logDaily(date, steps);
-            showInfo("✅ Steps logged successfully.");
+            UserData owner = user;
+            String day = date;
+            saveInBackground("✅ Steps logged successfully.", () -> {
+                StepsTracker.logDaily(owner, day, steps);
+                return null;
+            });
 
         } catch (Exception ex) {
             showError("Error: " + ex.getMessage());
@@ -393,14 +566,42 @@ public class FitLifeGUI extends JFrame {
 
             if (date.isEmpty()) date = LocalDate.now().toString();
 
-            WaterTracker.logDaily(date, liters);
-            showInfo("✅ Water logged successfully.");
+            UserData owner = user;
+            String day = date;
+            saveInBackground("✅ Water logged successfully.", () -> {
+                WaterTracker.logDaily(owner, day, liters);
+                return null;
+            });
 
         } catch (Exception ex) {
             showError("Error: " + ex.getMessage());
         }
     }
 
+    // Save an entry off the EDT, like the dashboard load: the first append of a session loads
+    // the history and a meal may touch the foods journal, neither of which may stall the window
+    private void saveInBackground(String success, Callable<Void> save) {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                return save.call();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    showInfo(success);
+                } catch (ExecutionException e) {
+                    showError("Error: " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                refreshDashboard();
+            }
+        }.execute();
+    }
+
     private void runBMI() {
         JTextField ageField = new JTextField();
         JTextField heightField = new JTextField();
@@ -440,7 +641,7 @@ public class FitLifeGUI extends JFrame {
 
         if (start == null || start.trim().isEmpty()) return;
 
-        String result = Tracker.generateWeeklySummary(start.trim());
+        String result = Tracker.generateWeeklySummary(user, start.trim());
         JTextArea area = new JTextArea(result);
         area.setEditable(false);
         area.setCaretPosition(0);
@@ -457,17 +658,6 @@ public class FitLifeGUI extends JFrame {
      * NEW: AI Health Analysis with Gemini LLM
      */
     private void analyzeWithAI() {
-        // Check if API key is configured
-        if (!GeminiConfig.isApiKeyConfigured()) {
-            showError("API Configuration Error:\n\n" +
-                    "GEMINI_API_KEY environment variable is not set.\n\n" +
-                    "Please set it before using AI analysis:\n\n" +
-                    "Windows: setx GEMINI_API_KEY \"your-api-key\"\n" +
-                    "Mac/Linux: export GEMINI_API_KEY=\"your-api-key\"\n\n" +
-                    "Get free API key at: https://aistudio.google.com/app/apikeys");
-            return;
-        }
-
         // Create input dialog
         JTextArea queryArea = new JTextArea(3, 40);
         queryArea.setLineWrap(true);
@@ -492,55 +682,90 @@ public class FitLifeGUI extends JFrame {
             return;
         }
 
-        // Show loading dialog
-        JDialog loadingDialog = new JDialog(this, "Analyzing...", true);
-        JLabel loadingLabel = new JLabel(
-                "<html><center>" +
-                "🤖 Calling Gemini AI for personalized analysis...<br>" +
-                "This may take 3-5 seconds...<br><br>" +
-                "Analyzing your health metrics...<br>" +
-                "</center></html>"
-        );
-        loadingLabel.setHorizontalAlignment(SwingConstants.CENTER);
-        loadingDialog.add(loadingLabel, BorderLayout.CENTER);
-        loadingDialog.setSize(450, 180);
-        loadingDialog.setLocationRelativeTo(this);
-
-        // Run analysis in background thread
-        new Thread(() -> {
-            try {
-                // Extract metrics (last 30 days)
-                LocalDate endDate = LocalDate.now();
-                LocalDate startDate = endDate.minusDays(29);
-                Map<String, Object> metrics = MetricsExtractor.extractMetrics(startDate, endDate);
+        // Results dialog opens straight away and fills in as the answer streams back
+        JTextArea area = new JTextArea(formatAnalysisResults(new HashMap<>(), userQuery, false));
+        area.setEditable(false);
+        area.setLineWrap(true);
+        area.setWrapStyleWord(true);
+        area.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        area.setCaretPosition(0);
+        area.setMargin(new Insets(10, 10, 10, 10));
 
-                // Call Gemini
-                Map<String, Object> analysis = GeminiAnalyzer.analyzeUserHealth(metrics, userQuery);
+        JScrollPane scroll = new JScrollPane(area);
+        scroll.setPreferredSize(new Dimension(600, 500));
 
-                // Close loading dialog and display results
-                loadingDialog.dispose();
-                displayAnalysisResults(analysis, userQuery);
+        JDialog resultsDialog = new JDialog(this, "🤖 Analyzing...", false);
+        resultsDialog.add(scroll, BorderLayout.CENTER);
+        JButton closeBtn = new JButton("Cancel");
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.add(closeBtn);
+        resultsDialog.add(buttonPanel, BorderLayout.SOUTH);
+        resultsDialog.pack();
+        resultsDialog.setLocationRelativeTo(this);
+
+        // Partial results arrive on the analysis thread; only the latest one is drawn
+        AtomicReference<Map<String, Object>> latest = new AtomicReference<>();
+        AtomicBoolean finished = new AtomicBoolean();
+        Consumer<Map<String, Object>> onPartial = partial -> {
+            if (latest.getAndSet(partial) != null) return; // an update is already queued
+            SwingUtilities.invokeLater(() -> {
+                Map<String, Object> current = latest.getAndSet(null);
+                // the local answer stays up until the model's answer starts
+                if (current == null || finished.get() || !current.containsKey("answer")) return;
+                area.setText(formatAnalysisResults(current, userQuery, Boolean.TRUE.equals(current.get("refining"))));
+                area.setCaretPosition(0);
+            });
+        };
+
+        // Run analysis on the analysis service (last 30 days of metrics)
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = endDate.minusDays(29);
+        UserData analyzed = user;
+        CompletableFuture<Map<String, Object>> pending = AnalysisService.get().analyzeStreaming(
+                () -> MetricsExtractor.extractMetrics(analyzed, startDate, endDate), userQuery, onPartial);
+
+        // Cancel stops the request; once the analysis is done the same button closes the dialog
+        closeBtn.addActionListener(e -> {
+            pending.cancel(true);
+            resultsDialog.dispose();
+        });
+        resultsDialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        resultsDialog.addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                pending.cancel(true);
+                resultsDialog.dispose();
+            }
+        });
 
-            } catch (Exception ex) {
-                loadingDialog.dispose();
-                showError("Analysis failed:\n" + ex.getMessage());
-                ex.printStackTrace();
+        // Show the final analysis on the EDT
+        pending.whenComplete((analysis, error) -> SwingUtilities.invokeLater(() -> {
+            finished.set(true);
+            if (pending.isCancelled()) return;
+            if (error != null) {
+                resultsDialog.dispose();
+                showError("Analysis failed:\n" + error.getMessage());
+                error.printStackTrace();
+                return;
+            }
+            if (analysis.containsKey("error")) {
+                resultsDialog.dispose();
+                showError("Analysis Error:\n" + analysis.get("error"));
+                return;
             }
-        }).start();
+            area.setText(formatAnalysisResults(analysis, userQuery, true));
+            area.setCaretPosition(0);
+            resultsDialog.setTitle("🤖 AI Analysis Results");
+            closeBtn.setText("Close");
+        }));
 
-        loadingDialog.setVisible(true);
+        resultsDialog.setVisible(true);
     }
 
     /**
-     * Display AI analysis results in a formatted dialog
+     * Format AI analysis results; an incomplete analysis shows what has been generated so far
      */
-    private void displayAnalysisResults(Map<String, Object> analysis, String userQuery) {
-        // Check for errors
-        if (analysis.containsKey("error")) {
-            showError("Analysis Error:\n" + analysis.get("error"));
-            return;
-        }
-
+    private String formatAnalysisResults(Map<String, Object> analysis, String userQuery, boolean complete) {
+        String pendingMark = "…";
         StringBuilder result = new StringBuilder();
         result.append("═══════════════════════════════════════════════════════\n");
         result.append("             🤖 AI HEALTH ANALYSIS RESULTS              \n");
@@ -552,16 +777,15 @@ public class FitLifeGUI extends JFrame {
 
         result.append("ANSWER:\n");
         result.append("─────────────────────────────────────────────────────\n");
-        result.append(analysis.getOrDefault("answer", "N/A")).append("\n\n");
+        result.append(analysis.getOrDefault("answer", complete ? "N/A" : pendingMark)).append("\n\n");
 
         result.append("KEY INSIGHTS:\n");
         result.append("─────────────────────────────────────────────────────\n");
-        @SuppressWarnings("unchecked")
-        List<String> insights = (List<String>) analysis.getOrDefault("insights", new java.util.ArrayList<>());
-        if (insights.isEmpty()) {
-            result.append("• No additional insights\n");
+        Object insights = analysis.getOrDefault("insights", new java.util.ArrayList<>());
+        if (!(insights instanceof List) || ((List<?>) insights).isEmpty()) {
+            result.append(complete ? "• No additional insights\n" : pendingMark + "\n");
         } else {
-            for (String insight : insights) {
+            for (Object insight : (List<?>) insights) {
                 result.append("• ").append(insight).append("\n");
             }
         }
@@ -569,34 +793,39 @@ public class FitLifeGUI extends JFrame {
 
         result.append("RECOMMENDATIONS:\n");
         result.append("─────────────────────────────────────────────────────\n");
-        @SuppressWarnings("unchecked")
-        List<String> recommendations = (List<String>) analysis.getOrDefault("recommendations", new java.util.ArrayList<>());
-        if (recommendations.isEmpty()) {
-            result.append("• No specific recommendations\n");
+        Object recommendations = analysis.getOrDefault("recommendations", new java.util.ArrayList<>());
+        if (!(recommendations instanceof List) || ((List<?>) recommendations).isEmpty()) {
+            result.append(complete ? "• No specific recommendations\n" : pendingMark + "\n");
         } else {
-            for (String rec : recommendations) {
+            for (Object rec : (List<?>) recommendations) {
                 result.append("• ").append(rec).append("\n");
             }
         }
         result.append("\n");
 
-        double confidence = ((Number) analysis.getOrDefault("confidence", 0.0)).doubleValue();
         result.append("─────────────────────────────────────────────────────\n");
-        result.append("Analysis Confidence: ").append(String.format("%.0f%%", confidence * 100)).append("\n");
+        if (complete) {
+            double confidence = ((Number) analysis.getOrDefault("confidence", 0.0)).doubleValue();
+            result.append("Analysis Confidence: ").append(String.format("%.0f%%", confidence * 100)).append("\n");
+            if (analysis.containsKey("prompt_tokens")) {
+                result.append(String.format("Data sent: ~%s tokens, daily history as %s\n",
+                        analysis.get("prompt_tokens"), analysis.get("prompt_compaction")));
+            }
+            if ("local".equals(analysis.get("source"))) {
+                Object reason = analysis.get("fallback_reason");
+                result.append("Answered by the built-in rules").append(reason != null ? " (" + reason + ")" : "").append("\n");
+            }
+            if (Boolean.TRUE.equals(analysis.get("refining"))) {
+                result.append("Asking Gemini for a more detailed answer...\n");
+            }
+            if (Boolean.TRUE.equals(analysis.get("stale"))) {
+                result.append("(Gemini is unavailable right now; this is an earlier answer to the same question)\n");
+            }
+        } else {
+            result.append("Generating...\n");
+        }
         result.append("═══════════════════════════════════════════════════════\n");
-
-        JTextArea area = new JTextArea(result.toString());
-        area.setEditable(false);
-        area.setLineWrap(true);
-        area.setWrapStyleWord(true);
-        area.setFont(new Font("Monospaced", Font.PLAIN, 11));
-        area.setCaretPosition(0);
-        area.setMargin(new Insets(10, 10, 10, 10));
-
-        JScrollPane scroll = new JScrollPane(area);
-        scroll.setPreferredSize(new Dimension(600, 500));
-
-        JOptionPane.showMessageDialog(this, scroll, "🤖 AI Analysis Results", JOptionPane.INFORMATION_MESSAGE);
+        return result.toString();
     }
 
     private void showInfo(String msg) {
@@ -0,0 +1,417 @@
+package fitlife.ai;
+
+import fitlife.config.GeminiConfig;
+import fitlife.metrics.Counter;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Asynchronous front end to the Gemini API.
+ *
+ * Every analysis runs as its own task and is handed back as a {@link CompletableFuture}, so
+ * several questions can be in flight at once. Tasks run on virtual threads where the
+ * runtime has them (Java 21+) and on daemon platform threads otherwise; a semaphore caps
+ * how many HTTP requests are open at the same time. Cancelling a future interrupts its task,
+ * which abandons the HTTP exchange.
+ *
+ * Calls that fail with 429, a 5xx status or a network error are retried with backoff
+ * ({@link RetryPolicy}), each API key is held to a request rate ({@link RateLimiter}), and a
+ * {@link CircuitBreaker} stops calling an endpoint that keeps failing. While the circuit is
+ * open, a question is answered from the cache even if the entry has expired.
+ *
+ * Without an API key, or when the API cannot answer, the {@link LocalAnalyzer} rules answer
+ * instead; the result's "fallback_reason" says why. Streaming analyses show the local
+ * answer first and replace it with the model's as that arrives.
+ *
+ * Streaming analyses use the model's streamGenerateContent method with server-sent events
+ * and report the answer as it is generated. The shared instance is configured from
+ * {@link GeminiConfig}; the constructor takes the endpoint directly, so the service can be
+ * pointed at a local stub server.
+ *
+ * Analyses, API calls and single HTTP exchanges are timed in {@link Metrics}, with counts
+ * of cache hits, retries, API errors and local fallbacks.
+ */
+public class AnalysisService {
+
+    private static AnalysisService shared;
+
+    private static final Timer ANALYSIS_TIMER = Metrics.timer("AnalysisService.analysis");
+    private static final Timer CALL_TIMER = Metrics.timer("AnalysisService.call");
+    private static final Timer STREAM_TIMER = Metrics.timer("AnalysisService.stream");
+    private static final Timer REQUEST_TIMER = Metrics.timer("AnalysisService.request");
+    private static final Counter CACHE_HITS = Metrics.counter("AnalysisService.cacheHits");
+    private static final Counter RETRIES = Metrics.counter("AnalysisService.retries");
+    private static final Counter API_ERRORS = Metrics.counter("AnalysisService.apiErrors");
+    private static final Counter FALLBACKS = Metrics.counter("AnalysisService.fallbacks");
+
+    private final URI endpoint;
+    private final URI streamEndpoint;
+    private final String apiKey;
+    private final Duration timeout;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final ResponseCache cache;
+    private final RetryPolicy retry;
+    private final RateLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final PromptBuilder prompts = new PromptBuilder(GeminiConfig.getPromptTokenBudget());
+    private final HealthAnalyzer localAnalyzer = new LocalAnalyzer();
+
+    /** Thrown instead of calling the endpoint while the circuit is open. */
+    private static class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException() {
+            super("circuit open");
+        }
+    }
+
+    public AnalysisService(URI endpoint, String apiKey, int maxConcurrent, Duration timeout, ResponseCache cache) {
+        this(endpoint, apiKey, maxConcurrent, timeout, cache,
+                new RetryPolicy(3, Duration.ofMillis(500), Duration.ofSeconds(8)),
+                new RateLimiter(60, 5),
+                new CircuitBreaker(5, Duration.ofSeconds(30)));
+    }
+
+    public AnalysisService(URI endpoint, String apiKey, int maxConcurrent, Duration timeout, ResponseCache cache,
+            RetryPolicy retry, RateLimiter limiter, CircuitBreaker breaker) {
+        this.endpoint = endpoint;
+        this.streamEndpoint = streamEndpoint(endpoint);
+        this.apiKey = apiKey;
+        this.timeout = timeout;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.executor = newExecutor();
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+        this.cache = cache;
+        this.retry = retry;
+        this.limiter = limiter;
+        this.breaker = breaker;
+    }
+
+    /**
+     * Service for the endpoint and key in the environment.
+     */
+    public static synchronized AnalysisService get() {
+        if (shared == null) {
+            // repeat questions over unchanged data are answered without calling the API
+            ResponseCache cache = new ResponseCache(32, GeminiConfig.getCacheTtlMillis(), GeminiConfig.getCacheDir(), 256);
+            shared = new AnalysisService(
+                    URI.create(GeminiConfig.getApiEndpoint()),
+                    GeminiConfig.isApiKeyConfigured() ? GeminiConfig.getApiKey() : null,
+                    GeminiConfig.getMaxConcurrentRequests(),
+                    Duration.ofSeconds(GeminiConfig.getTimeoutSeconds()),
+                    cache,
+                    new RetryPolicy(GeminiConfig.getMaxRetries(), Duration.ofMillis(500), Duration.ofSeconds(8)),
+                    new RateLimiter(GeminiConfig.getRequestsPerMinute(), 5),
+                    new CircuitBreaker(5, Duration.ofSeconds(30)));
+        }
+        return shared;
+    }
+
+    /**
+     * Analyze the metrics for one question. The future completes with the analysis map;
+     * failures are reported in its "error" entry, as GeminiAnalyzer always has.
+     */
+    public CompletableFuture<Map<String, Object>> analyze(HealthMetrics metrics, String userQuery) {
+        return analyze(() -> metrics, userQuery);
+    }
+
+    /**
+     * Same, with the metrics gathered on the analysis thread rather than the caller's.
+     */
+    public CompletableFuture<Map<String, Object>> analyze(Supplier<HealthMetrics> metrics, String userQuery) {
+        return submit(metrics, userQuery, null);
+    }
+
+    /**
+     * Analyze with a streamed response. onPartial is called on the analysis thread with the
+     * fields readable so far ("answer", "insights", "recommendations", ...) each time more
+     * text arrives; the future completes with the full analysis as usual. The first update
+     * is the local analysis, marked "refining". A cached answer completes the future
+     * without any partial updates.
+     */
+    public CompletableFuture<Map<String, Object>> analyzeStreaming(Supplier<HealthMetrics> metrics, String userQuery,
+            Consumer<Map<String, Object>> onPartial) {
+        return submit(metrics, userQuery, onPartial);
+    }
+
+    private CompletableFuture<Map<String, Object>> submit(Supplier<HealthMetrics> metrics, String userQuery,
+            Consumer<Map<String, Object>> onPartial) {
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(run(metrics, userQuery, onPartial));
+            } catch (InterruptedException e) {
+                result.cancel(false);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        // cancelling the future stops the request it is waiting on
+        result.whenComplete((analysis, error) -> {
+            if (result.isCancelled()) task.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Ask several questions about the same metrics at once, one future per question.
+     */
+    public List<CompletableFuture<Map<String, Object>>> analyzeAll(HealthMetrics metrics, List<String> userQueries) {
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+        for (String q : userQueries) {
+            futures.add(analyze(metrics, q));
+        }
+        return futures;
+    }
+
+    /**
+     * Stop accepting work and interrupt running analyses.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Map<String, Object> run(Supplier<HealthMetrics> metricsSource, String userQuery,
+            Consumer<Map<String, Object>> onPartial) throws InterruptedException {
+        long t0 = System.nanoTime();
+        String cacheKey = null;
+        HealthMetrics metrics = null;
+        try {
+            metrics = metricsSource.get();
+            // Validate API key
+            if (apiKey == null || apiKey.trim().isEmpty()) {
+                return local(metrics, userQuery, "GEMINI_API_KEY is not set");
+            }
+            cacheKey = ResponseCache.key(endpoint.toString(), metrics, userQuery);
+            String apiResponse = cache.get(cacheKey);
+            if (apiResponse != null) {
+                CACHE_HITS.increment();
+                return GeminiAnalyzer.parseAnalysis(apiResponse);
+            }
+            if (onPartial != null) {
+                // answer straight away from the local rules; the model's reply replaces it as it arrives
+                Map<String, Object> first = local(metrics, userQuery, null);
+                first.put("refining", true);
+                onPartial.accept(first);
+            }
+            PromptBuilder.Prompt prompt = prompts.build(metrics, userQuery);
+            // round trip including retries, as the user waits for it
+            long sent = System.nanoTime();
+            try {
+                apiResponse = (onPartial == null) ? call(prompt.getText()) : stream(prompt.getText(), onPartial);
+            } finally {
+                ((onPartial == null) ? CALL_TIMER : STREAM_TIMER).recordSince(sent);
+            }
+            cache.put(cacheKey, apiResponse);
+            Map<String, Object> analysis = GeminiAnalyzer.parseAnalysis(apiResponse);
+            // how much history the answer was based on
+            analysis.put("prompt_tokens", prompt.getEstimatedTokens());
+            analysis.put("prompt_compaction", prompt.getCompaction().getDescription());
+            return analysis;
+        } catch (CircuitOpenException e) {
+            return fallback(cacheKey, metrics, userQuery);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            API_ERRORS.increment();
+            if (metrics == null) {
+                return GeminiAnalyzer.errorResult("API Error: " + e.getMessage());
+            }
+            String message = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+            return local(metrics, userQuery, "Gemini API error: " + message);
+        } finally {
+            ANALYSIS_TIMER.recordSince(t0);
+        }
+    }
+
+    // Last answer to the question however old, or the local analysis
+    private Map<String, Object> fallback(String cacheKey, HealthMetrics metrics, String userQuery) {
+        String stale = cache.getStale(cacheKey);
+        if (stale != null) {
+            Map<String, Object> analysis = GeminiAnalyzer.parseAnalysis(stale);
+            analysis.put("stale", true);
+            return analysis;
+        }
+        long seconds = (breaker.getRemainingOpenMillis() + 999) / 1000;
+        return local(metrics, userQuery, "Gemini API unavailable after repeated failures, next try in "
+                + seconds + " seconds");
+    }
+
+    private Map<String, Object> local(HealthMetrics metrics, String userQuery, String reason) {
+        Map<String, Object> analysis = localAnalyzer.analyze(metrics, userQuery);
+        if (reason != null) {
+            analysis.put("fallback_reason", reason);
+            FALLBACKS.increment();
+        }
+        return analysis;
+    }
+
+    // One generateContent call
+    private String call(String prompt) throws Exception {
+        HttpResponse<String> response = send(request(endpoint, prompt), HttpResponse.BodyHandlers.ofString());
+        try {
+            if (response.statusCode() != 200) {
+                throw new IOException("API returned status code: " + response.statusCode());
+            }
+            return GeminiAnalyzer.responseText(response.body());
+        } finally {
+            permits.release();
+        }
+    }
+
+    // One streamGenerateContent call; the text so far is re-read after every event
+    private String stream(String prompt, Consumer<Map<String, Object>> onPartial) throws Exception {
+        HttpResponse<Stream<String>> response = send(request(streamEndpoint, prompt), HttpResponse.BodyHandlers.ofLines());
+        try {
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new IOException("API returned status code: " + response.statusCode());
+                }
+                StringBuilder text = new StringBuilder();
+                StringBuilder data = new StringBuilder();
+                Iterator<String> it = lines.iterator();
+                while (it.hasNext()) {
+                    String line = it.next();
+                    if (line.startsWith("data:")) {
+                        if (data.length() > 0) data.append('\n');
+                        data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                    } else if (line.isEmpty() && data.length() > 0) {
+                        // a blank line ends the event
+                        append(text, data, onPartial);
+                    }
+                    if (Thread.interrupted()) throw new InterruptedException();
+                }
+                if (data.length() > 0) append(text, data, onPartial);
+                if (text.length() == 0) throw new IOException("Invalid API response format");
+                return text.toString();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /*
+     * Send the request, retrying failures the policy allows while the circuit stays closed.
+     * Returns the last response with a permit held; the caller releases it once the body
+     * has been read. Retries happen before any of the body is consumed, so a stream is
+     * never restarted halfway.
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            if (!breaker.allowRequest()) throw new CircuitOpenException();
+            try {
+                limiter.acquire(apiKey);
+                permits.acquire();
+            } catch (InterruptedException e) {
+                breaker.recordAbandoned();
+                throw e;
+            }
+            HttpResponse<T> response;
+            long t0 = System.nanoTime();
+            try {
+                response = client.send(request, handler);
+                REQUEST_TIMER.recordSince(t0);
+            } catch (IOException e) {
+                // failed exchanges count too: a timeout is the slowest round trip there is
+                REQUEST_TIMER.recordSince(t0);
+                permits.release();
+                breaker.recordFailure();
+                if (attempt >= retry.getMaxRetries()) throw e;
+                RETRIES.increment();
+                Thread.sleep(retry.backoffMillis(attempt));
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                permits.release();
+                breaker.recordAbandoned();
+                throw e;
+            }
+            int status = response.statusCode();
+            if (!RetryPolicy.isRetryable(status)) {
+                // the endpoint is up; a 4xx is a problem with this request, reported by the caller
+                breaker.recordSuccess();
+                return response;
+            }
+            breaker.recordFailure();
+            long delay = (attempt < retry.getMaxRetries())
+                    ? retry.delayMillis(attempt, response.headers().firstValue("Retry-After").orElse(null))
+                    : -1;
+            if (delay < 0) return response;
+            discard(response);
+            permits.release();
+            RETRIES.increment();
+            Thread.sleep(delay);
+        }
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) response.body()).close();
+            } catch (Exception e) {
+                // ignore close errors
+            }
+        }
+    }
+
+    private static void append(StringBuilder text, StringBuilder data, Consumer<Map<String, Object>> onPartial) {
+        String chunk = GeminiAnalyzer.chunkText(data.toString());
+        data.setLength(0);
+        if (chunk.isEmpty()) return;
+        text.append(chunk);
+        onPartial.accept(PartialAnalysis.parse(text.toString()));
+    }
+
+    private HttpRequest request(URI uri, String prompt) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(GeminiAnalyzer.requestBody(prompt)))
+                .build();
+    }
+
+    // models/x:generateContent -> models/x:streamGenerateContent?alt=sse
+    private static URI streamEndpoint(URI endpoint) {
+        String s = endpoint.toString().replace(":generateContent", ":streamGenerateContent");
+        return URI.create(s + (s.contains("?") ? "&" : "?") + "alt=sse");
+    }
+
+    // Virtual threads where the runtime has them (Java 21+), otherwise daemon platform threads
+    private static ExecutorService newExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "fitlife-analysis");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package fitlife.ai;
+
+import java.time.Duration;
+
+/**
+ * Stops calling an endpoint that keeps failing.
+ *
+ * After failureThreshold failures in a row the circuit opens and calls are refused for
+ * openDuration. Then a single trial call is let through (half open): success closes the
+ * circuit again, failure reopens it for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialRunning;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openDuration.toMillis();
+    }
+
+    /**
+     * Whether a call may go ahead now. While half open only the first caller gets through.
+     */
+    public synchronized boolean allowRequest() {
+        halfOpenIfExpired();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialRunning) return false;
+                trialRunning = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialRunning = false;
+    }
+
+    public synchronized void recordFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialRunning = false;
+        }
+    }
+
+    /**
+     * A call let through by {@link #allowRequest} ended without an outcome (it was cancelled).
+     */
+    public synchronized void recordAbandoned() {
+        trialRunning = false;
+    }
+
+    public synchronized State getState() {
+        halfOpenIfExpired();
+        return state;
+    }
+
+    /**
+     * Milliseconds until a trial call is allowed, 0 if calls are allowed now.
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) return 0;
+        return Math.max(0, openMillis - (System.currentTimeMillis() - openedAt));
+    }
+
+    private void halfOpenIfExpired() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialRunning = false;
+        }
+    }
+}
@@ -2,23 +2,22 @@ package fitlife.ai;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
-import fitlife.config.GeminiConfig;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import fitlife.metrics.Counter;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 /**
- * Calls Google Gemini API via REST for personalized health analysis
+ * Gemini prompts and responses for personalized health analysis.
+ * Requests are sent by {@link AnalysisService}.
  */
-public class GeminiAnalyzer {
+public class GeminiAnalyzer implements HealthAnalyzer {
     
     private static final Gson gson = new Gson();
-    private static final String API_ENDPOINT = "https://generativelanguage.googleapis.com/v1beta/models/gemini-2.0-flash-lite:generateContent";
+    private static final Timer ANALYZE_TIMER = Metrics.timer("GeminiAnalyzer.analyzeUserHealth");
+    private static final Counter UNPARSED = Metrics.counter("GeminiAnalyzer.unparsedResponses");
     
     /**
      * Analyze user health data with Gemini LLM
@@ -26,67 +25,75 @@ public class GeminiAnalyzer {
      * @param userQuery user's specific question
      * @return Map containing analysis results
      */
-    public static Map<String, Object> analyzeUserHealth(Map<String, Object> metrics, String userQuery) {
-        Map<String, Object> result = new HashMap<>();
+    public static Map<String, Object> analyzeUserHealth(HealthMetrics metrics, String userQuery) {
+        // Blocking form of AnalysisService#analyze
+        long t0 = System.nanoTime();
+        try {
+            return AnalysisService.get().analyze(metrics, userQuery).join();
+        } finally {
+            ANALYZE_TIMER.recordSince(t0);
+        }
+    }
+    
+    @Override
+    public Map<String, Object> analyze(HealthMetrics metrics, String userQuery) {
+        return analyzeUserHealth(metrics, userQuery);
+    }
+    
+    /**
+     * Turn the model's text into an analysis map with all expected fields
+     */
+    static Map<String, Object> parseAnalysis(String apiResponse) {
+        // Extract JSON from response (may be wrapped in markdown code blocks)
+        String jsonResponse = extractJsonFromResponse(apiResponse);
         
+        // Parse response
         try {
-            // Validate API key
-            if (!GeminiConfig.isApiKeyConfigured()) {
-                result.put("error", "API key not configured. Set GEMINI_API_KEY environment variable.");
-                result.put("confidence", 0.0);
-                return result;
-            }
-            
-            // Build prompt
-            String userPrompt = buildDetailedPrompt(metrics, userQuery);
-            
-            // Call Gemini API via REST
-            String apiResponse = callGeminiAPI(userPrompt, GeminiConfig.getApiKey());
-            
-            // Extract JSON from response (may be wrapped in markdown code blocks)
-            String jsonResponse = extractJsonFromResponse(apiResponse);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> analysis = gson.fromJson(jsonResponse, Map.class);
             
-            // Parse response
-            try {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> analysis = gson.fromJson(jsonResponse, Map.class);
-                
-                // Ensure all expected fields exist
-                if (!analysis.containsKey("answer")) {
-                    analysis.put("answer", "Analysis complete");
-                }
-                if (!analysis.containsKey("insights")) {
-                    analysis.put("insights", new java.util.ArrayList<String>());
-                }
-                if (!analysis.containsKey("recommendations")) {
-                    analysis.put("recommendations", new java.util.ArrayList<String>());
-                }
-                if (!analysis.containsKey("confidence")) {
-                    analysis.put("confidence", 0.85);
-                }
-                
-                return analysis;
-                
-            } catch (JsonSyntaxException e) {
-                // If JSON parsing fails, return raw response
-                result.put("answer", apiResponse);
-                result.put("insights", new java.util.ArrayList<String>());
-                result.put("recommendations", new java.util.ArrayList<String>());
-                result.put("confidence", 0.70);
-                return result;
+            // Ensure all expected fields exist
+            if (!analysis.containsKey("answer")) {
+                analysis.put("answer", "Analysis complete");
+            }
+            if (!analysis.containsKey("insights")) {
+                analysis.put("insights", new java.util.ArrayList<String>());
+            }
+            if (!analysis.containsKey("recommendations")) {
+                analysis.put("recommendations", new java.util.ArrayList<String>());
+            }
+            if (!analysis.containsKey("confidence")) {
+                analysis.put("confidence", 0.85);
             }
             
-        } catch (Exception e) {
-            result.put("error", "API Error: " + e.getMessage());
-            result.put("confidence", 0.0);
+            return analysis;
+            
+        } catch (JsonSyntaxException e) {
+            // If JSON parsing fails, return raw response
+            UNPARSED.increment();
+            Map<String, Object> result = new HashMap<>();
+            result.put("answer", apiResponse);
+            result.put("insights", new java.util.ArrayList<String>());
+            result.put("recommendations", new java.util.ArrayList<String>());
+            result.put("confidence", 0.70);
             return result;
         }
     }
     
+    /**
+     * Analysis map reporting a failure
+     */
+    static Map<String, Object> errorResult(String message) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("error", message);
+        result.put("confidence", 0.0);
+        return result;
+    }
+    
     /**
      * Extract JSON from response (handles markdown code blocks)
      */
-    private static String extractJsonFromResponse(String response) {
+    static String extractJsonFromResponse(String response) {
         // If response contains ```json ... ```, extract the JSON
         if (response.contains("```json")) {
             int start = response.indexOf("```json") + 7;
@@ -108,12 +115,9 @@ public class GeminiAnalyzer {
     }
     
     /**
-     * Call Gemini API via REST HTTP
+     * Build the generateContent request payload for a prompt
      */
-    private static String callGeminiAPI(String prompt, String apiKey) throws Exception {
-        String url = API_ENDPOINT + "?key=" + apiKey;
-        
-        // Build request payload
+    static String requestBody(String prompt) {
         Map<String, Object> requestBody = new HashMap<>();
         List<Map<String, Object>> contents = new java.util.ArrayList<>();
         Map<String, Object> content = new HashMap<>();
@@ -125,33 +129,13 @@ public class GeminiAnalyzer {
         contents.add(content);
         requestBody.put("contents", contents);
         
-        String jsonPayload = gson.toJson(requestBody);
-        
-        // Make HTTP request
-        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
-        conn.setConnectTimeout(30000);
-        conn.setReadTimeout(30000);
-        
-        // Send request
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonPayload.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-        
-        // Read response
-        int responseCode = conn.getResponseCode();
-        if (responseCode != 200) {
-            throw new Exception("API returned status code: " + responseCode);
-        }
-        
-        Scanner scanner = new Scanner(conn.getInputStream()).useDelimiter("\\A");
-        String response = scanner.hasNext() ? scanner.next() : "";
-        scanner.close();
-        
-        // Extract text from response
+        return gson.toJson(requestBody);
+    }
+    
+    /**
+     * Extract the generated text from a generateContent response body
+     */
+    static String responseText(String response) throws Exception {
         @SuppressWarnings("unchecked")
         Map<String, Object> responseMap = gson.fromJson(response, Map.class);
         @SuppressWarnings("unchecked")
@@ -171,11 +155,33 @@ public class GeminiAnalyzer {
     }
     
     /**
-     * Build detailed prompt for Gemini with metrics and user query
+     * Text carried by one streamGenerateContent chunk; empty for chunks without any
+     * (the last one may only hold the finish reason and usage counts)
      */
-    private static String buildDetailedPrompt(Map<String, Object> metrics, String userQuery) {
+    static String chunkText(String chunk) {
         @SuppressWarnings("unchecked")
-        List<String> topFoods = (List<String>) metrics.getOrDefault("top_foods", new java.util.ArrayList<>());
+        Map<String, Object> chunkMap = gson.fromJson(chunk, Map.class);
+        StringBuilder text = new StringBuilder();
+        Object candidates = (chunkMap == null) ? null : chunkMap.get("candidates");
+        if (candidates instanceof List && !((List<?>) candidates).isEmpty()) {
+            Object content = ((Map<?, ?>) ((List<?>) candidates).get(0)).get("content");
+            Object parts = (content instanceof Map) ? ((Map<?, ?>) content).get("parts") : null;
+            if (parts instanceof List) {
+                for (Object part : (List<?>) parts) {
+                    Object t = ((Map<?, ?>) part).get("text");
+                    if (t instanceof String) text.append((String) t);
+                }
+            }
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Build detailed prompt for Gemini with metrics and user query;
+     * history is the daily-series section chosen by PromptBuilder, or empty
+     */
+    static String buildDetailedPrompt(HealthMetrics metrics, String userQuery, String history) {
+        List<String> topFoods = metrics.topFoods(5);
         
         return String.format("""
             You are an expert personal health and fitness analyst. Analyze the following user health data and answer their specific question.
@@ -195,10 +201,10 @@ public class GeminiAnalyzer {
             
             HYDRATION:
             - Average Daily Water: %.1f liters
-            - Days With Water Logged: %.0f days
+            - Days With Water Logged: %d days
             - Water Range: %.1f - %.1f liters per day
             
-            === USER'S SPECIFIC QUESTION ===
+            %s=== USER'S SPECIFIC QUESTION ===
             "%s"
             
             === YOUR RESPONSE ===
@@ -214,20 +220,21 @@ public class GeminiAnalyzer {
             Make insights and recommendations specific and actionable based on their data.
             Confidence should be 0.0-1.0 indicating how confident you are in this analysis.
             """,
-            metrics.getOrDefault("analysis_start_date", "N/A"),
-            metrics.getOrDefault("analysis_end_date", "N/A"),
-            metrics.getOrDefault("analysis_period_days", 0),
-            metrics.getOrDefault("average_daily_calories", 0),
-            metrics.getOrDefault("total_meals_logged", 0),
+            metrics.startDate(),
+            metrics.endDate(),
+            metrics.periodDays(),
+            metrics.averageDailyCalories(),
+            metrics.totalMealsLogged(),
             topFoods.isEmpty() ? "None logged yet" : String.join(", ", topFoods),
-            metrics.getOrDefault("average_daily_steps", 0),
-            metrics.getOrDefault("step_days_logged", 0),
-            metrics.getOrDefault("min_daily_steps", 0),
-            metrics.getOrDefault("max_daily_steps", 0),
-            metrics.getOrDefault("average_daily_water_liters", 0.0),
-            metrics.getOrDefault("water_days_logged", 0.0),
-            metrics.getOrDefault("min_daily_water_liters", 0.0),
-            metrics.getOrDefault("max_daily_water_liters", 0.0),
+            metrics.averageDailySteps(),
+            metrics.stepDaysLogged(),
+            metrics.minDailySteps(),
+            metrics.maxDailySteps(),
+            metrics.averageDailyWaterLiters(),
+            metrics.waterDaysLogged(),
+            metrics.minDailyWaterLiters(),
+            metrics.maxDailyWaterLiters(),
+            history.isEmpty() ? "" : history + "\n",
             userQuery
         );
     }
@@ -0,0 +1,14 @@
+package fitlife.ai;
+
+import java.util.Map;
+
+/**
+ * Answers a health question from the metrics produced by {@link MetricsExtractor}.
+ *
+ * Implementations return a map with "answer", "insights", "recommendations" and
+ * "confidence", or an "error" entry if no analysis could be made.
+ */
+public interface HealthAnalyzer {
+
+    Map<String, Object> analyze(HealthMetrics metrics, String userQuery);
+}
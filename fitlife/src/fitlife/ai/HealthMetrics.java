@@ -0,0 +1,326 @@
+package fitlife.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Health metrics for one analysis period, as produced by {@link MetricsExtractor}.
+ *
+ * Immutable: the daily series are copied in and out, and read one day at a time through
+ * {@link #caloriesOn}, {@link #stepsOn} and {@link #waterOn} without copying. Two metrics
+ * are equal when every field and every day matches, which makes them usable as cache keys.
+ * {@link #toBytes} is a compact binary form, {@link #toJson} a readable one with the same
+ * snake_case names the prompt and earlier map-based code used.
+ */
+public record HealthMetrics(
+        LocalDate startDate,
+        LocalDate endDate,
+        int totalMealsLogged,
+        int totalCaloriesLogged,
+        int averageDailyCalories,
+        List<FoodStat> foods,
+        int stepDaysLogged,
+        long totalStepsLogged,
+        int averageDailySteps,
+        int minDailySteps,
+        int maxDailySteps,
+        int waterDaysLogged,
+        double totalWaterLiters,
+        double averageDailyWaterLiters,
+        double minDailyWaterLiters,
+        double maxDailyWaterLiters,
+        int[] dailyCalories,
+        int[] dailySteps,
+        double[] dailyWaterLiters) {
+
+    /** Value of a day with nothing logged in {@link #dailyCalories} and {@link #dailySteps}; water uses NaN. */
+    public static final int NOT_LOGGED = -1;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final Gson gson = new Gson();
+
+    /**
+     * Meals and total calories for one food, most frequent foods first.
+     */
+    public record FoodStat(String name, int meals, int calories) {
+        public FoodStat {
+            Objects.requireNonNull(name, "name");
+        }
+    }
+
+    public HealthMetrics {
+        Objects.requireNonNull(startDate, "startDate");
+        Objects.requireNonNull(endDate, "endDate");
+        foods = List.copyOf(foods);
+        dailyCalories = dailyCalories.clone();
+        dailySteps = dailySteps.clone();
+        dailyWaterLiters = dailyWaterLiters.clone();
+        if (dailySteps.length != dailyCalories.length || dailyWaterLiters.length != dailyCalories.length) {
+            throw new IllegalArgumentException("daily series differ in length");
+        }
+    }
+
+    public int periodDays() {
+        return (int) (ChronoUnit.DAYS.between(startDate, endDate) + 1);
+    }
+
+    /**
+     * Names of the most frequent foods, at most n.
+     */
+    public List<String> topFoods(int n) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < Math.min(n, foods.size()); i++) names.add(foods.get(i).name());
+        return names;
+    }
+
+    /** Number of days in the daily series. */
+    public int seriesDays() {
+        return dailyCalories.length;
+    }
+
+    /** Calories on day i of the period, or {@link #NOT_LOGGED}. */
+    public int caloriesOn(int day) {
+        return dailyCalories[day];
+    }
+
+    /** Steps on day i of the period, or {@link #NOT_LOGGED}. */
+    public int stepsOn(int day) {
+        return dailySteps[day];
+    }
+
+    /** Liters of water on day i of the period, or NaN if none was logged. */
+    public double waterOn(int day) {
+        return dailyWaterLiters[day];
+    }
+
+    @Override
+    public int[] dailyCalories() {
+        return dailyCalories.clone();
+    }
+
+    @Override
+    public int[] dailySteps() {
+        return dailySteps.clone();
+    }
+
+    @Override
+    public double[] dailyWaterLiters() {
+        return dailyWaterLiters.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HealthMetrics)) return false;
+        HealthMetrics m = (HealthMetrics) o;
+        return startDate.equals(m.startDate) && endDate.equals(m.endDate)
+                && totalMealsLogged == m.totalMealsLogged
+                && totalCaloriesLogged == m.totalCaloriesLogged
+                && averageDailyCalories == m.averageDailyCalories
+                && foods.equals(m.foods)
+                && stepDaysLogged == m.stepDaysLogged
+                && totalStepsLogged == m.totalStepsLogged
+                && averageDailySteps == m.averageDailySteps
+                && minDailySteps == m.minDailySteps
+                && maxDailySteps == m.maxDailySteps
+                && waterDaysLogged == m.waterDaysLogged
+                && Double.compare(totalWaterLiters, m.totalWaterLiters) == 0
+                && Double.compare(averageDailyWaterLiters, m.averageDailyWaterLiters) == 0
+                && Double.compare(minDailyWaterLiters, m.minDailyWaterLiters) == 0
+                && Double.compare(maxDailyWaterLiters, m.maxDailyWaterLiters) == 0
+                && Arrays.equals(dailyCalories, m.dailyCalories)
+                && Arrays.equals(dailySteps, m.dailySteps)
+                && Arrays.equals(dailyWaterLiters, m.dailyWaterLiters);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Objects.hash(startDate, endDate, totalMealsLogged, totalCaloriesLogged, foods,
+                totalStepsLogged, stepDaysLogged, waterDaysLogged, totalWaterLiters);
+        h = 31 * h + Arrays.hashCode(dailyCalories);
+        h = 31 * h + Arrays.hashCode(dailySteps);
+        return 31 * h + Arrays.hashCode(dailyWaterLiters);
+    }
+
+    @Override
+    public String toString() {
+        return "HealthMetrics" + toJson();
+    }
+
+    // ---- binary form ----
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + dailyCalories.length * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(startDate.toEpochDay());
+            out.writeLong(endDate.toEpochDay());
+            out.writeInt(totalMealsLogged);
+            out.writeInt(totalCaloriesLogged);
+            out.writeInt(averageDailyCalories);
+            out.writeInt(foods.size());
+            for (FoodStat f : foods) {
+                out.writeUTF(f.name());
+                out.writeInt(f.meals());
+                out.writeInt(f.calories());
+            }
+            out.writeInt(stepDaysLogged);
+            out.writeLong(totalStepsLogged);
+            out.writeInt(averageDailySteps);
+            out.writeInt(minDailySteps);
+            out.writeInt(maxDailySteps);
+            out.writeInt(waterDaysLogged);
+            out.writeDouble(totalWaterLiters);
+            out.writeDouble(averageDailyWaterLiters);
+            out.writeDouble(minDailyWaterLiters);
+            out.writeDouble(maxDailyWaterLiters);
+            out.writeInt(dailyCalories.length);
+            for (int i = 0; i < dailyCalories.length; i++) {
+                out.writeInt(dailyCalories[i]);
+                out.writeInt(dailySteps[i]);
+                out.writeDouble(dailyWaterLiters[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by in-memory streams
+        }
+        return bytes.toByteArray();
+    }
+
+    public static HealthMetrics fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) throw new IOException("Unknown metrics format " + version);
+            LocalDate start = LocalDate.ofEpochDay(in.readLong());
+            LocalDate end = LocalDate.ofEpochDay(in.readLong());
+            int meals = in.readInt();
+            int calories = in.readInt();
+            int avgCalories = in.readInt();
+            List<FoodStat> foods = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                foods.add(new FoodStat(in.readUTF(), in.readInt(), in.readInt()));
+            }
+            int stepDays = in.readInt();
+            long steps = in.readLong();
+            int avgSteps = in.readInt();
+            int minSteps = in.readInt();
+            int maxSteps = in.readInt();
+            int waterDays = in.readInt();
+            double water = in.readDouble();
+            double avgWater = in.readDouble();
+            double minWater = in.readDouble();
+            double maxWater = in.readDouble();
+            int n = in.readInt();
+            if (n < 0 || n > data.length) throw new IOException("Corrupt metrics series length " + n);
+            int[] dailyCalories = new int[n];
+            int[] dailySteps = new int[n];
+            double[] dailyWater = new double[n];
+            for (int i = 0; i < n; i++) {
+                dailyCalories[i] = in.readInt();
+                dailySteps[i] = in.readInt();
+                dailyWater[i] = in.readDouble();
+            }
+            return new HealthMetrics(start, end, meals, calories, avgCalories, foods,
+                    stepDays, steps, avgSteps, minSteps, maxSteps,
+                    waterDays, water, avgWater, minWater, maxWater,
+                    dailyCalories, dailySteps, dailyWater);
+        }
+    }
+
+    // ---- JSON form ----
+
+    public String toJson() {
+        JsonObject o = new JsonObject();
+        o.addProperty("analysis_start_date", startDate.toString());
+        o.addProperty("analysis_end_date", endDate.toString());
+        o.addProperty("analysis_period_days", periodDays());
+        o.addProperty("total_meals_logged", totalMealsLogged);
+        o.addProperty("total_calories_logged", totalCaloriesLogged);
+        o.addProperty("average_daily_calories", averageDailyCalories);
+        JsonArray foodArray = new JsonArray();
+        for (FoodStat f : foods) {
+            JsonObject food = new JsonObject();
+            food.addProperty("name", f.name());
+            food.addProperty("meals", f.meals());
+            food.addProperty("calories", f.calories());
+            foodArray.add(food);
+        }
+        o.add("food_breakdown", foodArray);
+        o.addProperty("step_days_logged", stepDaysLogged);
+        o.addProperty("total_steps_logged", totalStepsLogged);
+        o.addProperty("average_daily_steps", averageDailySteps);
+        o.addProperty("min_daily_steps", minDailySteps);
+        o.addProperty("max_daily_steps", maxDailySteps);
+        o.addProperty("water_days_logged", waterDaysLogged);
+        o.addProperty("total_water_logged_liters", totalWaterLiters);
+        o.addProperty("average_daily_water_liters", averageDailyWaterLiters);
+        o.addProperty("min_daily_water_liters", minDailyWaterLiters);
+        o.addProperty("max_daily_water_liters", maxDailyWaterLiters);
+        JsonArray calories = new JsonArray();
+        JsonArray steps = new JsonArray();
+        JsonArray water = new JsonArray();
+        for (int i = 0; i < dailyCalories.length; i++) {
+            if (dailyCalories[i] == NOT_LOGGED) calories.add(JsonNull.INSTANCE); else calories.add(dailyCalories[i]);
+            if (dailySteps[i] == NOT_LOGGED) steps.add(JsonNull.INSTANCE); else steps.add(dailySteps[i]);
+            if (Double.isNaN(dailyWaterLiters[i])) water.add(JsonNull.INSTANCE); else water.add(dailyWaterLiters[i]);
+        }
+        o.add("daily_calories", calories);
+        o.add("daily_steps", steps);
+        o.add("daily_water_liters", water);
+        return gson.toJson(o);
+    }
+
+    public static HealthMetrics fromJson(String json) {
+        JsonObject o = JsonParser.parseString(json).getAsJsonObject();
+        List<FoodStat> foods = new ArrayList<>();
+        for (JsonElement e : o.getAsJsonArray("food_breakdown")) {
+            JsonObject f = e.getAsJsonObject();
+            foods.add(new FoodStat(f.get("name").getAsString(), f.get("meals").getAsInt(), f.get("calories").getAsInt()));
+        }
+        JsonArray calories = o.getAsJsonArray("daily_calories");
+        JsonArray steps = o.getAsJsonArray("daily_steps");
+        JsonArray water = o.getAsJsonArray("daily_water_liters");
+        int n = calories.size();
+        int[] dailyCalories = new int[n];
+        int[] dailySteps = new int[n];
+        double[] dailyWater = new double[n];
+        for (int i = 0; i < n; i++) {
+            dailyCalories[i] = calories.get(i).isJsonNull() ? NOT_LOGGED : calories.get(i).getAsInt();
+            dailySteps[i] = steps.get(i).isJsonNull() ? NOT_LOGGED : steps.get(i).getAsInt();
+            dailyWater[i] = water.get(i).isJsonNull() ? Double.NaN : water.get(i).getAsDouble();
+        }
+        return new HealthMetrics(
+                LocalDate.parse(o.get("analysis_start_date").getAsString()),
+                LocalDate.parse(o.get("analysis_end_date").getAsString()),
+                o.get("total_meals_logged").getAsInt(),
+                o.get("total_calories_logged").getAsInt(),
+                o.get("average_daily_calories").getAsInt(),
+                foods,
+                o.get("step_days_logged").getAsInt(),
+                o.get("total_steps_logged").getAsLong(),
+                o.get("average_daily_steps").getAsInt(),
+                o.get("min_daily_steps").getAsInt(),
+                o.get("max_daily_steps").getAsInt(),
+                o.get("water_days_logged").getAsInt(),
+                o.get("total_water_logged_liters").getAsDouble(),
+                o.get("average_daily_water_liters").getAsDouble(),
+                o.get("min_daily_water_liters").getAsDouble(),
+                o.get("max_daily_water_liters").getAsDouble(),
+                dailyCalories, dailySteps, dailyWater);
+    }
+}
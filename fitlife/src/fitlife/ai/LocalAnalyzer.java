@@ -0,0 +1,187 @@
+package fitlife.ai;
+
+import fitlife.core.Tracker;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rule-based analysis that runs in-process, without the Gemini API.
+ *
+ * Compares the period averages with the targets the weekly summary uses (see
+ * {@link Tracker}), looks at the trend between the first and second half of the period
+ * and at how many days were logged, and picks the findings that match the question's
+ * topic for the answer. Confidence grows with the share of days logged but stays below
+ * what the model usually reports.
+ */
+public class LocalAnalyzer implements HealthAnalyzer {
+
+    private static final double LOW_CALORIES = 1200.0;
+
+    private enum Topic { NUTRITION, ACTIVITY, HYDRATION, ENERGY, GENERAL }
+
+    @Override
+    public Map<String, Object> analyze(HealthMetrics metrics, String userQuery) {
+        long days = Math.max(1, metrics.periodDays());
+        int meals = metrics.totalMealsLogged();
+        double calories = metrics.averageDailyCalories();
+        int stepDays = metrics.stepDaysLogged();
+        double steps = metrics.averageDailySteps();
+        int waterDays = metrics.waterDaysLogged();
+        double water = metrics.averageDailyWaterLiters();
+        double[] dailyCalories = new double[metrics.seriesDays()];
+        double[] dailySteps = new double[metrics.seriesDays()];
+        for (int i = 0; i < dailyCalories.length; i++) {
+            dailyCalories[i] = metrics.caloriesOn(i) == HealthMetrics.NOT_LOGGED ? Double.NaN : metrics.caloriesOn(i);
+            dailySteps[i] = metrics.stepsOn(i) == HealthMetrics.NOT_LOGGED ? Double.NaN : metrics.stepsOn(i);
+        }
+
+        List<String> nutrition = new ArrayList<>();
+        List<String> activity = new ArrayList<>();
+        List<String> hydration = new ArrayList<>();
+        List<String> recommendations = new ArrayList<>();
+
+        if (meals == 0) {
+            nutrition.add("No meals were logged in this period.");
+            recommendations.add("Log your meals each day so your calorie intake can be assessed.");
+        } else if (calories > Tracker.CALORIE_LIMIT) {
+            nutrition.add(String.format("You average %.0f kcal a day, above the %.0f kcal guideline.", calories, Tracker.CALORIE_LIMIT));
+            recommendations.add("Trim portion sizes or swap a high-calorie food for a lighter one to get under "
+                    + String.format("%.0f kcal a day.", Tracker.CALORIE_LIMIT));
+        } else if (calories < LOW_CALORIES) {
+            nutrition.add(String.format("You average %.0f kcal a day, which is low; some meals may be missing from the log.", calories));
+            recommendations.add("Make sure every meal is logged, and eat enough to fuel your activity.");
+        } else {
+            nutrition.add(String.format("Your calorie intake of %.0f kcal a day is within the guideline.", calories));
+        }
+        String calorieTrend = trend(dailyCalories, 0.10);
+        if (calorieTrend != null) nutrition.add("Calorie intake is " + calorieTrend + " over the period.");
+        List<String> topFoods = metrics.topFoods(3);
+        if (!topFoods.isEmpty()) {
+            nutrition.add("Your most frequent foods are " + String.join(", ", topFoods) + ".");
+        }
+
+        if (stepDays == 0) {
+            activity.add("No steps were logged in this period.");
+            recommendations.add("Record your daily steps to track your activity.");
+        } else if (steps < Tracker.STEPS_TARGET) {
+            activity.add(String.format("You average %.0f steps a day, short of the %.0f step target.", steps, Tracker.STEPS_TARGET));
+            recommendations.add(String.format("Add a %d-minute walk to reach about %.0f steps a day.",
+                    walkMinutes(Tracker.STEPS_TARGET - steps), Tracker.STEPS_TARGET));
+        } else {
+            activity.add(String.format("You average %.0f steps a day, meeting the %.0f step target.", steps, Tracker.STEPS_TARGET));
+        }
+        String stepsTrend = trend(dailySteps, 0.10);
+        if (stepsTrend != null) activity.add("Your step count is " + stepsTrend + ".");
+
+        if (waterDays == 0) {
+            hydration.add("No water intake was logged in this period.");
+            recommendations.add("Log the water you drink to check your hydration.");
+        } else if (water < Tracker.WATER_TARGET_LITERS) {
+            hydration.add(String.format("You drink %.1f L a day, below the %.1f L target.", water, Tracker.WATER_TARGET_LITERS));
+            recommendations.add(String.format("Drink about %.1f L more water a day, for example a glass with every meal.",
+                    Tracker.WATER_TARGET_LITERS - water));
+        } else {
+            hydration.add(String.format("You drink %.1f L of water a day, meeting the target.", water));
+        }
+
+        Topic topic = topic(userQuery);
+        List<String> answer = new ArrayList<>();
+        List<String> insights = new ArrayList<>();
+        switch (topic) {
+            case NUTRITION:
+                answer.addAll(nutrition);
+                insights.addAll(activity);
+                insights.addAll(hydration);
+                break;
+            case ACTIVITY:
+                answer.addAll(activity);
+                insights.addAll(nutrition);
+                insights.addAll(hydration);
+                break;
+            case HYDRATION:
+                answer.addAll(hydration);
+                insights.addAll(nutrition);
+                insights.addAll(activity);
+                break;
+            default:
+                // energy questions touch all three; lead with the first finding of each
+                answer.add(nutrition.get(0));
+                answer.add(activity.get(0));
+                answer.add(hydration.get(0));
+                insights.addAll(nutrition.subList(1, nutrition.size()));
+                insights.addAll(activity.subList(1, activity.size()));
+                break;
+        }
+        if (topic == Topic.ENERGY && (water < Tracker.WATER_TARGET_LITERS || calories < LOW_CALORIES)) {
+            answer.add("Low water or calorie intake are common causes of tiredness.");
+        }
+        if (recommendations.isEmpty()) {
+            recommendations.add("Keep up your current habits; they meet all three daily targets.");
+        }
+
+        // share of the period with each kind of data logged
+        double coverage = (Math.min(days, average(dailyCalories, 0, dailyCalories.length)[1]) + Math.min(days, stepDays) + Math.min(days, waterDays)) / (3.0 * days);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("answer", String.join(" ", answer));
+        result.put("insights", insights);
+        result.put("recommendations", recommendations);
+        result.put("confidence", Math.round((0.4 + 0.4 * coverage) * 100) / 100.0);
+        result.put("source", "local");
+        return result;
+    }
+
+    private static Topic topic(String userQuery) {
+        String q = (userQuery == null) ? "" : userQuery.toLowerCase(Locale.ROOT);
+        String[] tokens = q.split("[^\\p{L}\\p{N}]+");
+        if (mentions(tokens, "tired", "energy", "fatigue", "sleep", "exhaust")) return Topic.ENERGY;
+        if (mentions(tokens, "water", "hydrat", "dehydrat", "drink", "thirst")) return Topic.HYDRATION;
+        if (mentions(tokens, "step", "walk", "active", "activity", "exercise", "run", "move", "moving")) return Topic.ACTIVITY;
+        if (mentions(tokens, "eat", "food", "calor", "diet", "protein", "meal", "weight", "carb", "fat", "sugar")) return Topic.NUTRITION;
+        return Topic.GENERAL;
+    }
+
+    // True if a word of the question starts with one of the keywords, so "runs" counts for
+    // "run" but "brunch" does not, and "great" does not count for "eat"
+    private static boolean mentions(String[] tokens, String... words) {
+        for (String t : tokens) {
+            for (String w : words) {
+                if (t.startsWith(w)) return true;
+            }
+        }
+        return false;
+    }
+
+    // "rising" or "falling" when the second half of the logged days differs from the first by more than the threshold
+    private static String trend(double[] values, double threshold) {
+        int half = values.length / 2;
+        double[] first = average(values, 0, half);
+        double[] second = average(values, half, values.length);
+        if (first[1] < 3 || second[1] < 3 || first[0] <= 0) return null;
+        double change = (second[0] - first[0]) / first[0];
+        if (change > threshold) return String.format("rising (%+.0f%% in the second half)", change * 100);
+        if (change < -threshold) return String.format("falling (%+.0f%% in the second half)", change * 100);
+        return null;
+    }
+
+    // {average, count} of the logged (non-NaN) values in values[from, to)
+    private static double[] average(double[] values, int from, int to) {
+        double sum = 0;
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (!Double.isNaN(values[i])) {
+                sum += values[i];
+                n++;
+            }
+        }
+        return new double[] {n == 0 ? 0 : sum / n, n};
+    }
+
+    // about 100 steps a minute at a walking pace, rounded up to 5 minutes
+    private static int walkMinutes(double steps) {
+        return (int) Math.max(5, Math.ceil(steps / 100 / 5) * 5);
+    }
+}
@@ -0,0 +1,165 @@
+package fitlife.ai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lenient reader for the analysis JSON while the model is still generating it.
+ *
+ * Parses as much of the object as has arrived: an unterminated string is returned as far
+ * as it goes, an unterminated array with the elements seen so far, and a trailing number
+ * is left out until something follows it. The complete response is still parsed with Gson
+ * by {@link GeminiAnalyzer#parseAnalysis}.
+ */
+final class PartialAnalysis {
+
+    private final String text;
+    private int pos;
+    private boolean truncated; // reached the end of the text in the middle of a value
+
+    private PartialAnalysis(String text, int start) {
+        this.text = text;
+        this.pos = start;
+    }
+
+    /**
+     * Fields readable from a prefix of the model's reply; empty until the object starts.
+     */
+    static Map<String, Object> parse(String partial) {
+        int start = partial.indexOf('{');
+        if (start < 0) return new HashMap<>();
+        PartialAnalysis p = new PartialAnalysis(partial, start + 1);
+        return p.object();
+    }
+
+    // Members of an object whose '{' has been consumed
+    private Map<String, Object> object() {
+        Map<String, Object> out = new HashMap<>();
+        while (!truncated) {
+            skipSeparators();
+            if (pos >= text.length() || text.charAt(pos) == '}') {
+                pos++;
+                break;
+            }
+            if (text.charAt(pos) != '"') break; // not JSON after all
+            pos++;
+            String key = string();
+            if (truncated) break;
+            skipWhitespace();
+            if (pos >= text.length() || text.charAt(pos) != ':') break;
+            pos++;
+            skipWhitespace();
+            if (pos >= text.length()) break;
+            Object value = value();
+            if (value != null) out.put(key, value);
+        }
+        return out;
+    }
+
+    private List<Object> array() {
+        List<Object> out = new ArrayList<>();
+        while (!truncated) {
+            skipSeparators();
+            if (pos >= text.length()) {
+                truncated = true;
+                break;
+            }
+            if (text.charAt(pos) == ']') {
+                pos++;
+                break;
+            }
+            Object value = value();
+            if (value != null) out.add(value);
+            else if (!truncated) break;
+        }
+        return out;
+    }
+
+    private Object value() {
+        char c = text.charAt(pos);
+        if (c == '"') {
+            pos++;
+            String s = string();
+            return s.isEmpty() && truncated ? null : s;
+        }
+        if (c == '[') {
+            pos++;
+            return array();
+        }
+        if (c == '{') {
+            pos++;
+            return object();
+        }
+        return literal();
+    }
+
+    // Characters up to the closing quote, decoding escapes; partial if the quote has not arrived
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        while (pos < text.length()) {
+            char c = text.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= text.length()) break;
+            char e = text.charAt(pos++);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        pos = text.length();
+                        truncated = true;
+                        return sb.toString();
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        // keep the text readable
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append(e); // \" \\ \/
+            }
+        }
+        truncated = true;
+        return sb.toString();
+    }
+
+    // Number, true, false or null; left out while it may still be growing
+    private Object literal() {
+        int start = pos;
+        while (pos < text.length() && ",]} \t\r\n".indexOf(text.charAt(pos)) < 0) pos++;
+        if (pos >= text.length()) {
+            truncated = true;
+            return null;
+        }
+        String token = text.substring(start, pos);
+        switch (token) {
+            case "true": return Boolean.TRUE;
+            case "false": return Boolean.FALSE;
+            case "null": return null;
+            default:
+                try {
+                    return Double.parseDouble(token);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+    }
+
+    private void skipSeparators() {
+        while (pos < text.length() && (Character.isWhitespace(text.charAt(pos)) || text.charAt(pos) == ',')) pos++;
+    }
+}
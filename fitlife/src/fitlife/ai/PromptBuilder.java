@@ -0,0 +1,252 @@
+package fitlife.ai;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the analysis prompt with as much daily history as fits a token budget.
+ *
+ * The daily calories, steps and water series are written at the most detailed
+ * {@link Compaction} level whose prompt stays within the budget: one line per day, then
+ * day-to-day changes with repeats run-length encoded, then the same with rounded values,
+ * then weekly averages, and finally the period aggregates alone. A longer analysis window
+ * therefore costs a coarser history rather than a longer, slower request.
+ *
+ * Token counts are estimates: runs of letters count one token per four characters, digits
+ * and other symbols one token each, which is close to how the Gemini tokenizer treats the
+ * mostly numeric history.
+ */
+public class PromptBuilder {
+
+    public enum Compaction {
+        DAILY("one line per day"),
+        DELTA("day-to-day changes"),
+        QUANTIZED("rounded day-to-day changes"),
+        WEEKLY("weekly averages"),
+        SUMMARY("period totals only");
+
+        private final String description;
+
+        Compaction(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * A built prompt with its estimated size and the history level that was used.
+     */
+    public static final class Prompt {
+        private final String text;
+        private final int tokens;
+        private final Compaction compaction;
+
+        Prompt(String text, int tokens, Compaction compaction) {
+            this.text = text;
+            this.tokens = tokens;
+            this.compaction = compaction;
+        }
+
+        public String getText() { return text; }
+
+        public int getEstimatedTokens() { return tokens; }
+
+        public Compaction getCompaction() { return compaction; }
+    }
+
+    // Rounding steps for QUANTIZED, in series units (water is in centiliters)
+    private static final long CALORIE_QUANTUM = 50;
+    private static final long STEPS_QUANTUM = 250;
+    private static final long WATER_QUANTUM = 25;
+
+    private final int tokenBudget;
+
+    public PromptBuilder(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    public Prompt build(HealthMetrics metrics, String userQuery) {
+        String base = GeminiAnalyzer.buildDetailedPrompt(metrics, userQuery, "");
+        int baseTokens = estimateTokens(base);
+        Series series = Series.of(metrics);
+        for (Compaction level : Compaction.values()) {
+            if (level == Compaction.SUMMARY) break;
+            String history = history(series, metrics, level);
+            // the history goes in whole, so the sizes add up
+            int tokens = baseTokens + estimateTokens(history);
+            if (tokens <= tokenBudget) {
+                return new Prompt(GeminiAnalyzer.buildDetailedPrompt(metrics, userQuery, history), tokens, level);
+            }
+        }
+        return new Prompt(base, baseTokens, Compaction.SUMMARY);
+    }
+
+    /**
+     * Estimated token count of a piece of text.
+     */
+    public static int estimateTokens(CharSequence text) {
+        int tokens = 0;
+        int letters = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (Character.isLetter(ch)) {
+                letters++;
+                continue;
+            }
+            tokens += (letters + 3) / 4;
+            letters = 0;
+            if (!Character.isWhitespace(ch)) tokens++;
+        }
+        return tokens + (letters + 3) / 4;
+    }
+
+    // ---- history sections ----
+
+    private static String history(Series s, HealthMetrics metrics, Compaction level) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== DAILY HISTORY ===\n");
+        switch (level) {
+            case DAILY:
+                sb.append("date: calories kcal, steps, water L (- = not logged)\n");
+                LocalDate day = s.start;
+                for (int i = 0; i < s.days; i++, day = day.plusDays(1)) {
+                    sb.append(day).append(": ")
+                            .append(value(s.calories, i, 1)).append(", ")
+                            .append(value(s.steps, i, 1)).append(", ")
+                            .append(value(s.water, i, 100)).append('\n');
+                }
+                break;
+            case DELTA:
+            case QUANTIZED:
+                boolean rounded = level == Compaction.QUANTIZED;
+                sb.append("One entry per day from ").append(s.start)
+                        .append(". The first logged value is absolute, later ones are the change from the previous logged day;")
+                        .append(" _ = not logged, xN after an entry = that entry N days in a row.");
+                if (rounded) sb.append(" Values rounded to 50 kcal, 250 steps and 0.25 L.");
+                sb.append('\n');
+                sb.append("Calories (kcal): ").append(deltas(s.calories, rounded ? CALORIE_QUANTUM : 1, 1)).append('\n');
+                sb.append("Steps: ").append(deltas(s.steps, rounded ? STEPS_QUANTUM : 1, 1)).append('\n');
+                sb.append("Water (L): ").append(deltas(s.water, rounded ? WATER_QUANTUM : 1, 100)).append('\n');
+                break;
+            default:
+                sb.append("Weekly averages of the logged days, weeks starting ").append(s.start)
+                        .append(" (_ = nothing logged that week)\n");
+                sb.append("Calories (kcal): ").append(weekly(s.calories, 1)).append('\n');
+                sb.append("Steps: ").append(weekly(s.steps, 1)).append('\n');
+                sb.append("Water (L): ").append(weekly(s.water, 100)).append('\n');
+                break;
+        }
+        foods(sb, metrics, (level == Compaction.DAILY || level == Compaction.DELTA) ? 10 : 5);
+        return sb.toString();
+    }
+
+    private static void foods(StringBuilder sb, HealthMetrics metrics, int limit) {
+        List<HealthMetrics.FoodStat> foods = metrics.foods();
+        if (foods.isEmpty()) return;
+        sb.append("\n=== FOOD BREAKDOWN (meals, total kcal) ===\n");
+        for (HealthMetrics.FoodStat food : foods.subList(0, Math.min(limit, foods.size()))) {
+            sb.append("- ").append(food.name()).append(": ")
+                    .append(food.meals()).append(", ")
+                    .append(food.calories()).append('\n');
+        }
+    }
+
+    private static String value(long[] series, int i, int scale) {
+        return series[i] == Series.MISSING ? "-" : format(series[i], scale);
+    }
+
+    // Entries with runs of equal entries collapsed to "entry xN"
+    private static String deltas(long[] series, long quantum, int scale) {
+        List<String> entries = new ArrayList<>();
+        long previous = Series.MISSING;
+        for (long v : series) {
+            if (v == Series.MISSING) {
+                entries.add("_");
+                continue;
+            }
+            long q = Math.round((double) v / quantum) * quantum;
+            if (previous == Series.MISSING) {
+                entries.add(format(q, scale));
+            } else {
+                long d = q - previous;
+                entries.add((d >= 0 ? "+" : "") + format(d, scale));
+            }
+            previous = q;
+        }
+        return runLength(entries);
+    }
+
+    private static String weekly(long[] series, int scale) {
+        long step = (scale == 1) ? 1 : scale / 10; // water keeps one decimal
+        List<String> entries = new ArrayList<>();
+        for (int w = 0; w < series.length; w += 7) {
+            long sum = 0;
+            int n = 0;
+            for (int i = w; i < Math.min(series.length, w + 7); i++) {
+                if (series[i] == Series.MISSING) continue;
+                sum += series[i];
+                n++;
+            }
+            entries.add(n == 0 ? "_" : format(Math.round((double) sum / n / step) * step, scale));
+        }
+        return runLength(entries);
+    }
+
+    private static String runLength(List<String> entries) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < entries.size(); ) {
+            int j = i;
+            while (j < entries.size() && entries.get(j).equals(entries.get(i))) j++;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(entries.get(i));
+            if (j - i > 1) sb.append('x').append(j - i);
+            i = j;
+        }
+        return sb.toString();
+    }
+
+    // value / scale without trailing zeros; scale is 1, or 100 to turn centiliters into liters
+    private static String format(long value, int scale) {
+        if (scale == 1) return Long.toString(value);
+        return BigDecimal.valueOf(value, 2).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * The daily series of the metrics, as whole units (water in centiliters).
+     */
+    private static final class Series {
+        static final long MISSING = Long.MIN_VALUE;
+
+        final LocalDate start;
+        final int days;
+        final long[] calories;
+        final long[] steps;
+        final long[] water;
+
+        private Series(LocalDate start, long[] calories, long[] steps, long[] water) {
+            this.start = start;
+            this.days = calories.length;
+            this.calories = calories;
+            this.steps = steps;
+            this.water = water;
+        }
+
+        static Series of(HealthMetrics metrics) {
+            int days = metrics.seriesDays();
+            long[] calories = new long[days];
+            long[] steps = new long[days];
+            long[] water = new long[days];
+            for (int i = 0; i < days; i++) {
+                calories[i] = metrics.caloriesOn(i) == HealthMetrics.NOT_LOGGED ? MISSING : metrics.caloriesOn(i);
+                steps[i] = metrics.stepsOn(i) == HealthMetrics.NOT_LOGGED ? MISSING : metrics.stepsOn(i);
+                water[i] = Double.isNaN(metrics.waterOn(i)) ? MISSING : Math.round(metrics.waterOn(i) * 100);
+            }
+            return new Series(metrics.startDate(), calories, steps, water);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package fitlife.ai;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token bucket per API key: a key may make a short burst of calls, then one call every
+ * 60 / requestsPerMinute seconds. {@link #acquire} waits for the next free slot.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final int burst;
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    private static final class Bucket {
+        double tokens;
+        long refilled;
+
+        Bucket(double tokens, long refilled) {
+            this.tokens = tokens;
+            this.refilled = refilled;
+        }
+    }
+
+    public RateLimiter(int requestsPerMinute, int burst) {
+        this.intervalNanos = 60_000_000_000L / Math.max(1, requestsPerMinute);
+        this.burst = Math.max(1, burst);
+    }
+
+    /**
+     * Block until the key may make another call.
+     */
+    public void acquire(String key) throws InterruptedException {
+        long wait;
+        while ((wait = reserve(key == null ? "" : key)) > 0) {
+            Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+        }
+    }
+
+    // Take a token and return 0, or return the nanoseconds until one is available
+    private synchronized long reserve(String key) {
+        long now = System.nanoTime();
+        Bucket b = buckets.computeIfAbsent(key, k -> new Bucket(burst, now));
+        b.tokens = Math.min(burst, b.tokens + (double) (now - b.refilled) / intervalNanos);
+        b.refilled = now;
+        if (b.tokens >= 1) {
+            b.tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) ((1 - b.tokens) * intervalNanos));
+    }
+}
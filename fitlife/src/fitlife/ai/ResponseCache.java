@@ -0,0 +1,187 @@
+package fitlife.ai;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cache of Gemini answers keyed by a fingerprint of the metrics and the user's question.
+ *
+ * The key is a SHA-256 of the model endpoint, the binary form of the metrics and the
+ * question with case and whitespace normalized, so the same question over unchanged data
+ * maps to the same entry. Entries expire after a fixed time to live, but stay available through
+ * {@link #getStale} until evicted, as a fallback while the API is down. The memory tier is a small LRU
+ * map; the optional disk tier keeps one JSON file per entry and evicts the least recently
+ * used files once it holds too many.
+ */
+public class ResponseCache {
+
+    private static final Gson gson = new Gson();
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final Path dir;       // null when the disk tier is off
+    private final int diskCapacity;
+
+    private final Map<String, Entry> memory;
+
+    private static final class Entry {
+        long created;
+        String response;
+
+        Entry(long created, String response) {
+            this.created = created;
+            this.response = response;
+        }
+    }
+
+    public ResponseCache(int capacity, long ttlMillis, Path dir, int diskCapacity) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.dir = dir;
+        this.diskCapacity = diskCapacity;
+        // access order makes the eldest entry the least recently used
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Stable cache key for the metrics and question sent to the given model endpoint.
+     */
+    public static String key(String endpoint, HealthMetrics metrics, String userQuery) {
+        String query = (userQuery == null) ? "" : userQuery.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((endpoint + "\n").getBytes(StandardCharsets.UTF_8));
+            sha.update(metrics.toBytes());
+            byte[] digest = sha.digest(("\n" + query).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Cached response for the key, or null if missing or expired.
+     */
+    public synchronized String get(String key) {
+        if (ttlMillis <= 0) return null;
+        long now = System.currentTimeMillis();
+        Entry e = memory.get(key);
+        if (e == null) {
+            e = readDisk(key);
+            if (e == null) return null;
+            memory.put(key, e);
+        }
+        return (now - e.created <= ttlMillis) ? e.response : null;
+    }
+
+    /**
+     * Cached response for the key even if it has expired, or null if there is none.
+     */
+    public synchronized String getStale(String key) {
+        if (ttlMillis <= 0) return null;
+        Entry e = memory.get(key);
+        if (e == null) e = readDisk(key);
+        return (e == null) ? null : e.response;
+    }
+
+    public synchronized void put(String key, String response) {
+        if (ttlMillis <= 0) return;
+        Entry e = new Entry(System.currentTimeMillis(), response);
+        memory.put(key, e);
+        writeDisk(key, e);
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        if (dir == null || !Files.isDirectory(dir)) return;
+        for (Path p : cacheFiles()) {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException ex) {
+                // ignore delete errors
+            }
+        }
+    }
+
+    // ---- disk tier ----
+
+    private Entry readDisk(String key) {
+        if (dir == null) return null;
+        Path file = dir.resolve(key + ".json");
+        if (!Files.exists(file)) return null;
+        try {
+            Entry e = gson.fromJson(Files.readString(file, StandardCharsets.UTF_8), Entry.class);
+            if (e == null || e.response == null) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            // modification time doubles as the last-use time for eviction
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return e;
+        } catch (IOException | JsonSyntaxException ex) {
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry e) {
+        if (dir == null) return;
+        try {
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(key + ".tmp");
+            Files.writeString(tmp, gson.toJson(e), StandardCharsets.UTF_8);
+            Files.move(tmp, dir.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING);
+            evictDisk();
+        } catch (IOException ex) {
+            // the disk tier is best effort
+        }
+    }
+
+    // Delete the least recently used files beyond the disk capacity
+    private void evictDisk() throws IOException {
+        List<Path> files = cacheFiles();
+        if (files.size() <= diskCapacity) return;
+        files.sort((a, b) -> Long.compare(lastModified(a), lastModified(b)));
+        for (int i = 0; i < files.size() - diskCapacity; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private List<Path> cacheFiles() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.json")) {
+            for (Path p : ds) files.add(p);
+        } catch (IOException ex) {
+            // treat as empty
+        }
+        return files;
+    }
+
+    private static long lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package fitlife.ai;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When and how long to wait before repeating a failed API call.
+ *
+ * Rate limiting (429), server errors (500, 502, 503, 504) and network errors are retried
+ * with exponential backoff and jitter, so clients that failed together do not retry in
+ * lockstep. A Retry-After header from the server takes precedence over the computed delay.
+ */
+public class RetryPolicy {
+
+    /** Longest Retry-After the caller will sit through; beyond that the call fails instead. */
+    public static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, Duration baseDelay, Duration maxDelay) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMillis = Math.max(1, baseDelay.toMillis());
+        this.maxDelayMillis = Math.max(baseDelayMillis, maxDelay.toMillis());
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Whether a response with this status is worth repeating.
+     */
+    public static boolean isRetryable(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Delay before retry number attempt + 1: half of base * 2^attempt (capped) plus a random
+     * amount up to the other half.
+     */
+    public long backoffMillis(int attempt) {
+        long delay = baseDelayMillis << Math.min(attempt, 20);
+        if (delay <= 0 || delay > maxDelayMillis) delay = maxDelayMillis;
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    /**
+     * Delay before the next retry given the server's Retry-After header (seconds or an
+     * HTTP date), or -1 if the wait would exceed {@link #MAX_RETRY_AFTER_MILLIS}.
+     */
+    public long delayMillis(int attempt, String retryAfter) {
+        long backoff = backoffMillis(attempt);
+        long requested = retryAfterMillis(retryAfter);
+        if (requested > MAX_RETRY_AFTER_MILLIS) return -1;
+        return Math.max(backoff, requested);
+    }
+
+    // 0 when the header is missing or unreadable
+    static long retryAfterMillis(String header) {
+        if (header == null || header.trim().isEmpty()) return 0;
+        String value = header.trim();
+        try {
+            return Math.max(0, Long.parseLong(value)) * 1000;
+        } catch (NumberFormatException e) {
+            // not delta-seconds, try an HTTP date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
@@ -9,6 +9,15 @@ public class GeminiConfig {
     
     private static final String MODEL_NAME = "gemini-2.0-flash-lite";
     private static final String API_KEY = System.getenv("GEMINI_API_KEY");
+    private static final String CACHE_TTL_MINUTES = System.getenv("GEMINI_CACHE_TTL_MINUTES");
+    private static final String CACHE_DIR = System.getenv("GEMINI_CACHE_DIR");
+    private static final String API_ENDPOINT = System.getenv("GEMINI_API_ENDPOINT");
+    private static final String MAX_CONCURRENT = System.getenv("GEMINI_MAX_CONCURRENT");
+    private static final String TIMEOUT_SECONDS = System.getenv("GEMINI_TIMEOUT_SECONDS");
+    private static final String MAX_RETRIES = System.getenv("GEMINI_MAX_RETRIES");
+    private static final String REQUESTS_PER_MINUTE = System.getenv("GEMINI_REQUESTS_PER_MINUTE");
+    private static final String PROMPT_TOKEN_BUDGET = System.getenv("GEMINI_PROMPT_TOKEN_BUDGET");
+    private static final long DEFAULT_CACHE_TTL_MINUTES = 60;
     
     /**
      * Get the Gemini model name
@@ -40,4 +49,100 @@ public class GeminiConfig {
     public static boolean isApiKeyConfigured() {
         return API_KEY != null && !API_KEY.trim().isEmpty();
     }
+    
+    /**
+     * How long a cached analysis stays valid, from GEMINI_CACHE_TTL_MINUTES
+     * @return time to live in milliseconds (default 60 minutes, 0 disables caching)
+     */
+    public static long getCacheTtlMillis() {
+        if (CACHE_TTL_MINUTES == null || CACHE_TTL_MINUTES.trim().isEmpty()) {
+            return DEFAULT_CACHE_TTL_MINUTES * 60_000L;
+        }
+        try {
+            return Math.max(0, Long.parseLong(CACHE_TTL_MINUTES.trim())) * 60_000L;
+        } catch (NumberFormatException e) {
+            return DEFAULT_CACHE_TTL_MINUTES * 60_000L;
+        }
+    }
+    
+    /**
+     * Directory for the on-disk analysis cache, from GEMINI_CACHE_DIR
+     * @return cache directory, or null if the disk cache is disabled (default)
+     */
+    public static java.nio.file.Path getCacheDir() {
+        if (CACHE_DIR == null || CACHE_DIR.trim().isEmpty()) {
+            return null;
+        }
+        return java.nio.file.Paths.get(CACHE_DIR.trim());
+    }
+    
+    /**
+     * generateContent endpoint, from GEMINI_API_ENDPOINT (e.g. a local stub server)
+     * @return endpoint URL, by default the public API for the configured model
+     */
+    public static String getApiEndpoint() {
+        if (API_ENDPOINT == null || API_ENDPOINT.trim().isEmpty()) {
+            return "https://generativelanguage.googleapis.com/v1beta/models/" + MODEL_NAME + ":generateContent";
+        }
+        return API_ENDPOINT.trim();
+    }
+    
+    /**
+     * Maximum analysis requests in flight at once, from GEMINI_MAX_CONCURRENT
+     * @return request limit (default 4)
+     */
+    public static int getMaxConcurrentRequests() {
+        return (int) positiveNumber(MAX_CONCURRENT, 4);
+    }
+    
+    /**
+     * Connect and response timeout for one API call, from GEMINI_TIMEOUT_SECONDS
+     * @return timeout in seconds (default 30)
+     */
+    public static long getTimeoutSeconds() {
+        return positiveNumber(TIMEOUT_SECONDS, 30);
+    }
+    
+    /**
+     * Retries for a call that failed with 429, a 5xx status or a network error, from GEMINI_MAX_RETRIES
+     * @return retry count (default 3, 0 disables retries)
+     */
+    public static int getMaxRetries() {
+        if (MAX_RETRIES == null || MAX_RETRIES.trim().isEmpty()) {
+            return 3;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(MAX_RETRIES.trim()));
+        } catch (NumberFormatException e) {
+            return 3;
+        }
+    }
+    
+    /**
+     * Calls allowed per minute for one API key, from GEMINI_REQUESTS_PER_MINUTE
+     * @return request rate (default 60)
+     */
+    public static int getRequestsPerMinute() {
+        return (int) positiveNumber(REQUESTS_PER_MINUTE, 60);
+    }
+    
+    /**
+     * Estimated prompt size the daily history is compacted to fit, from GEMINI_PROMPT_TOKEN_BUDGET
+     * @return token budget (default 1500)
+     */
+    public static int getPromptTokenBudget() {
+        return (int) positiveNumber(PROMPT_TOKEN_BUDGET, 1500);
+    }
+    
+    private static long positiveNumber(String value, long fallback) {
+        if (value == null || value.trim().isEmpty()) {
+            return fallback;
+        }
+        try {
+            long n = Long.parseLong(value.trim());
+            return n > 0 ? n : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
 }
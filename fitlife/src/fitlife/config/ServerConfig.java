@@ -0,0 +1,68 @@
+package fitlife.config;
+
+/**
+ * Settings for the headless HTTP API server, read from environment variables:
+ *   FITLIFE_SERVER_PORT    - port to listen on (default 8080)
+ *   FITLIFE_SERVER_BIND    - address to listen on (default 127.0.0.1; 0.0.0.0 for phones on the network)
+ *   FITLIFE_SERVER_TOKEN   - if set, every request needs "Authorization: Bearer <token>"
+ *   FITLIFE_SERVER_THREADS - request threads when virtual threads are unavailable (default 64)
+ */
+public class ServerConfig {
+
+    private static final String PORT = System.getenv("FITLIFE_SERVER_PORT");
+    private static final String BIND = System.getenv("FITLIFE_SERVER_BIND");
+    private static final String TOKEN = System.getenv("FITLIFE_SERVER_TOKEN");
+    private static final String THREADS = System.getenv("FITLIFE_SERVER_THREADS");
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_THREADS = 64;
+
+    /**
+     * Get the port the server listens on
+     * @return port, 8080 if unset or invalid
+     */
+    public static int getPort() {
+        int port = parse(PORT, DEFAULT_PORT);
+        return (port < 0 || port > 65535) ? DEFAULT_PORT : port;
+    }
+
+    /**
+     * Get the address the server listens on
+     * @return host name or address, loopback if unset
+     */
+    public static String getBindAddress() {
+        if (BIND == null || BIND.trim().isEmpty()) {
+            return "127.0.0.1";
+        }
+        return BIND.trim();
+    }
+
+    /**
+     * Get the bearer token requests must carry
+     * @return token, or null if requests are not checked
+     */
+    public static String getToken() {
+        if (TOKEN == null || TOKEN.trim().isEmpty()) {
+            return null;
+        }
+        return TOKEN.trim();
+    }
+
+    /**
+     * Get the size of the request thread pool used where virtual threads are unavailable
+     * @return thread count, at least 1
+     */
+    public static int getThreads() {
+        return Math.max(1, parse(THREADS, DEFAULT_THREADS));
+    }
+
+    private static int parse(String value, int fallback) {
+        if (value == null || value.trim().isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fitlife.config;
+
+import fitlife.data.WriteBehindQueue;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Storage settings for the FITLIFE data logs.
+ * Durability of tracker saves is read from environment variable: FITLIFE_DURABILITY
+ *   buffered - saves return at once, written in the background (default)
+ *   fsync    - saves return at once, each written batch is forced to disk
+ *   sync     - saves wait until the entry is written and forced to disk
+ * User profiles are kept in one directory each under FITLIFE_PROFILES_DIR (default: profiles).
+ * FITLIFE_USER names the profile the GUI opens; unset, it uses the files in the working directory.
+ */
+public class StorageConfig {
+    
+    private static final String DURABILITY = System.getenv("FITLIFE_DURABILITY");
+    private static final String PROFILES_DIR = System.getenv("FITLIFE_PROFILES_DIR");
+    private static final String USER = System.getenv("FITLIFE_USER");
+    
+    /**
+     * Get the configured durability policy for tracker saves
+     * @return durability policy, BUFFERED if unset or unrecognised
+     */
+    public static WriteBehindQueue.Durability getDurability() {
+        if (DURABILITY == null || DURABILITY.trim().isEmpty()) {
+            return WriteBehindQueue.Durability.BUFFERED;
+        }
+        try {
+            return WriteBehindQueue.Durability.valueOf(DURABILITY.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return WriteBehindQueue.Durability.BUFFERED;
+        }
+    }
+    
+    /**
+     * Get the directory holding one subdirectory per user profile
+     * @return profiles directory, "profiles" in the working directory if unset
+     */
+    public static Path getProfilesDir() {
+        if (PROFILES_DIR == null || PROFILES_DIR.trim().isEmpty()) {
+            return Paths.get("profiles");
+        }
+        return Paths.get(PROFILES_DIR.trim());
+    }
+    
+    /**
+     * Get the profile to open at startup
+     * @return user id, or null to use the files in the working directory
+     */
+    public static String getUser() {
+        if (USER == null || USER.trim().isEmpty()) {
+            return null;
+        }
+        return USER.trim();
+    }
+}
@@ -1,88 +1,28 @@
 package fitlife.core;
 
+import fitlife.data.FitLifeRepository;
+import fitlife.data.FoodJournal;
 import fitlife.data.Savable;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import fitlife.data.UserData;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Locale;
 
 public class CalorieTracker extends Tracker implements Savable {
 
+    private static final Timer SAVE_TIMER = Metrics.timer("CalorieTracker.saveToFile");
+
     private String mealName;
     private double quantityGrams;
     private int calories;
     private String category;
 
-    private static final String FOODS_FILE = "foods.txt";
-    private static final String MEALS_FILE = "meals.txt";
-    private static final Map<String, Double> caloriesPerGramMap = new HashMap<>();
-
-    // load known foods on class initialization
-    static {
-        loadFoods();
-    }
-
-    private static void loadFoods() {
-        File f = new File(FOODS_FILE);
-        if (!f.exists()) return;
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 2) {
-                    String name = parts[0].trim().toLowerCase(Locale.ROOT);
-                    try {
-                        double cpg = Double.parseDouble(parts[1].trim());
-                        caloriesPerGramMap.put(name, cpg);
-                    } catch (NumberFormatException ex) {
-                        // ignore malformed line
-                    }
-                }
-            }
-        } catch (IOException e) {
-            // ignore load errors
-        }
-    }
-
-    private static void saveFoods() throws IOException {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(FOODS_FILE, false))) {
-            for (Map.Entry<String, Double> e : caloriesPerGramMap.entrySet()) {
-                pw.println(e.getKey() + "," + e.getValue());
-            }
-        }
-    }
-
     // Constructor when calories are provided (first time or explicit)
     public CalorieTracker(String mealName, double quantityGrams, int calories, String category) {
-        super();
-        this.mealName = mealName;
-        this.quantityGrams = quantityGrams;
-        this.category = category;
-
-        String key = (mealName == null) ? "" : mealName.toLowerCase(Locale.ROOT);
-        if (calories > 0 && quantityGrams > 0) {
-            this.calories = calories;
-            double cpg = calories / quantityGrams;
-            caloriesPerGramMap.put(key, cpg);
-            try {
-                saveFoods();
-            } catch (IOException e) {
-                // ignore save errors (could log)
-            }
-        } else {
-            Double cpg = caloriesPerGramMap.get(key);
-            if (cpg != null) {
-                this.calories = (int) Math.round(cpg * quantityGrams);
-            } else {
-                this.calories = 0; // unknown until user provides calories
-            }
-        }
+        this(UserData.local(), LocalDate.now(), mealName, quantityGrams, calories, category);
     }
 
     // Convenience constructor when calories are omitted (lookup only)
@@ -92,23 +32,33 @@ public class CalorieTracker extends Tracker implements Savable {
 
     // New constructor allowing explicit date
     public CalorieTracker(LocalDate date, String mealName, double quantityGrams, int calories, String category) {
-        super(date);
+        this(UserData.local(), date, mealName, quantityGrams, calories, category);
+    }
+
+    // New constructor allowing explicit date with calories omitted -> delegate to 5-arg ctor
+    public CalorieTracker(LocalDate date, String mealName, double quantityGrams, String category) {
+        this(date, mealName, quantityGrams, 0, category);
+    }
+
+    // Meal for a specific user; known foods (calories per gram) come from their foods.txt
+    public CalorieTracker(UserData user, LocalDate date, String mealName, double quantityGrams, int calories, String category) {
+        super(user, date);
         this.mealName = mealName;
         this.quantityGrams = quantityGrams;
         this.category = category;
 
+        FoodJournal foods = user.foods();
         String key = (mealName == null) ? "" : mealName.toLowerCase(Locale.ROOT);
         if (calories > 0 && quantityGrams > 0) {
             this.calories = calories;
             double cpg = calories / quantityGrams;
-            caloriesPerGramMap.put(key, cpg);
             try {
-                saveFoods();
+                foods.put(key, cpg);
             } catch (IOException e) {
                 // ignore save errors (could log)
             }
         } else {
-            Double cpg = caloriesPerGramMap.get(key);
+            Double cpg = foods.caloriesPerGram(key);
             if (cpg != null) {
                 this.calories = (int) Math.round(cpg * quantityGrams);
             } else {
@@ -117,9 +67,17 @@ public class CalorieTracker extends Tracker implements Savable {
         }
     }
 
-    // New constructor allowing explicit date with calories omitted -> delegate to 5-arg ctor
-    public CalorieTracker(LocalDate date, String mealName, double quantityGrams, String category) {
-        this(date, mealName, quantityGrams, 0, category);
+    public CalorieTracker(UserData user, LocalDate date, String mealName, double quantityGrams, String category) {
+        this(user, date, mealName, quantityGrams, 0, category);
+    }
+
+    // Known foods matching a partly typed meal name, for autocomplete
+    public static List<String> suggestFoods(String query, int limit) {
+        return suggestFoods(UserData.local(), query, limit);
+    }
+
+    public static List<String> suggestFoods(UserData user, String query, int limit) {
+        return user.foods().search(query, limit);
     }
 
     public int getCalories() {
@@ -136,8 +94,11 @@ public class CalorieTracker extends Tracker implements Savable {
 
     @Override
     public void saveToFile() throws IOException {
-        FileWriter fw = new FileWriter(MEALS_FILE, true);
-        fw.write(getDataAsString() + System.lineSeparator());
-        fw.close();
+        long t0 = System.nanoTime();
+        try {
+            user.repository().append(FitLifeRepository.Log.MEALS, getDataAsString());
+        } finally {
+            SAVE_TIMER.recordSince(t0);
+        }
     }
 }
@@ -1,24 +1,25 @@
 package fitlife.core;
 
+import fitlife.data.FitLifeRepository;
 import fitlife.data.Savable;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import fitlife.data.UserData;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.format.TextStyle;
+import java.util.Locale;
 
 public class StepsTracker extends Tracker implements Savable {
 
     // removed local day/entryDate; reuse Tracker's date/day
     private int steps;
 
-    private static final String STEPS_FILE = "steps.txt";
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final Timer SAVE_TIMER = Metrics.timer("StepsTracker.saveToFile");
+    private static final Timer REPORT_TIMER = Metrics.timer("StepsTracker.generateWeeklyReport");
 
     // Constructor that accepts a specific date
     public StepsTracker(LocalDate date, int steps) {
@@ -26,6 +27,12 @@ public class StepsTracker extends Tracker implements Savable {
         this.steps = steps;
     }
 
+    // Steps for a specific user's log
+    public StepsTracker(UserData user, LocalDate date, int steps) {
+        super(user, date);
+        this.steps = steps;
+    }
+
     // Backwards-compatible constructor (only steps) - uses today's date
     public StepsTracker(int steps) {
         super();
@@ -44,13 +51,20 @@ public class StepsTracker extends Tracker implements Savable {
 
     @Override
     public void saveToFile() throws IOException {
-        FileWriter fw = new FileWriter(STEPS_FILE, true);
-        fw.write(getDataAsString() + System.lineSeparator());
-        fw.close();
+        long t0 = System.nanoTime();
+        try {
+            user.repository().append(FitLifeRepository.Log.STEPS, getDataAsString());
+        } finally {
+            SAVE_TIMER.recordSince(t0);
+        }
     }
 
     // Convenience static helper to log a day's steps and persist it (accepts ISO date)
     public static void logDaily(String dateIso, int steps) throws IOException {
+        logDaily(UserData.local(), dateIso, steps);
+    }
+
+    public static void logDaily(UserData user, String dateIso, int steps) throws IOException {
         LocalDate d;
         try {
             d = LocalDate.parse(dateIso, DATE_FMT);
@@ -58,39 +72,26 @@ public class StepsTracker extends Tracker implements Savable {
             // fallback to today
             d = LocalDate.now();
         }
-        StepsTracker entry = new StepsTracker(d, steps);
+        StepsTracker entry = new StepsTracker(user, d, steps);
         entry.saveToFile();
     }
 
-    // Parse steps.txt into entries
-    private static List<StepsEntry> readAllEntries() {
-        List<StepsEntry> list = new ArrayList<>();
-        File f = new File(STEPS_FILE);
-        if (!f.exists()) return list;
-        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 3) {
-                    try {
-                        LocalDate d = LocalDate.parse(parts[0].trim(), DATE_FMT);
-                        String day = parts[1].trim();
-                        int s = Integer.parseInt(parts[2].trim());
-                        list.add(new StepsEntry(d, day, s));
-                    } catch (DateTimeParseException | NumberFormatException ex) {
-                        // skip malformed line
-                    }
-                }
-            }
-        } catch (IOException e) {
-            // ignore read errors
-        }
-        return list;
-    }
-
     // Generate a weekly report starting from the given ISO date (inclusive).
     // Example startDateIso: "2025-11-10"
     public static String generateWeeklyReport(String startDateIso) {
+        return generateWeeklyReport(UserData.local(), startDateIso);
+    }
+
+    public static String generateWeeklyReport(UserData user, String startDateIso) {
+        long t0 = System.nanoTime();
+        try {
+            return weeklyReport(user, startDateIso);
+        } finally {
+            REPORT_TIMER.recordSince(t0);
+        }
+    }
+
+    private static String weeklyReport(UserData user, String startDateIso) {
         LocalDate start;
         try {
             start = LocalDate.parse(startDateIso, DATE_FMT);
@@ -98,20 +99,15 @@ public class StepsTracker extends Tracker implements Savable {
             return "Invalid start date format. Use yyyy-MM-dd.";
         }
 
-        List<StepsEntry> entries = readAllEntries();
+        FitLifeRepository.DayWindow week = user.repository().window(start, 7);
         int total = 0;
         StringBuilder sb = new StringBuilder();
         sb.append("Weekly Steps Report: ").append(start.toString()).append(" to ").append(start.plusDays(6).toString()).append(System.lineSeparator());
         for (int i = 0; i < 7; i++) {
             LocalDate d = start.plusDays(i);
-            int stepsForDay = 0;
-            String dayName = d.getDayOfWeek().name();
-            for (StepsEntry e : entries) {
-                if (e.date.equals(d)) {
-                    stepsForDay += e.steps;
-                    dayName = e.day != null && !e.day.isEmpty() ? e.day : dayName;
-                }
-            }
+            int stepsForDay = week.steps(i);
+            // days with entries show the logged day name, others the enum name
+            String dayName = week.stepsEntries(i) > 0 ? getDayName(d) : d.getDayOfWeek().name();
             total += stepsForDay;
             sb.append(d.toString()).append(" (").append(dayName).append("): ").append(stepsForDay).append(" steps").append(System.lineSeparator());
         }
@@ -121,7 +117,7 @@ public class StepsTracker extends Tracker implements Savable {
         sb.append(String.format("Average daily steps (over 7 days): %.2f", average)).append(System.lineSeparator());
 
         // Health message per requirement
-        if (average < 7500.0) {
+        if (average < STEPS_TARGET) {
             sb.append("Advice: Move a bit more and be healthy.");
         } else {
             sb.append("Good job — keep it up!");
@@ -129,15 +125,7 @@ public class StepsTracker extends Tracker implements Savable {
         return sb.toString();
     }
 
-    // Internal simple data holder
-    private static class StepsEntry {
-        LocalDate date;
-        String day;
-        int steps;
-        StepsEntry(LocalDate date, String day, int steps) {
-            this.date = date;
-            this.day = day;
-            this.steps = steps;
-        }
+    private static String getDayName(LocalDate d) {
+        return d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
     }
 }
@@ -1,31 +1,48 @@
 package fitlife.core;
 
+import fitlife.data.FitLifeRepository;
+import fitlife.data.UserData;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.util.Locale;
 import java.time.format.TextStyle;
 
 public abstract class Tracker {
+    // Daily targets behind the weekly summary's health messages
+    public static final double CALORIE_LIMIT = 2500.0;
+    public static final double STEPS_TARGET = 7500.0;
+    public static final double WATER_TARGET_LITERS = 4.0;
+
+    private static final Timer SUMMARY_TIMER = Metrics.timer("Tracker.generateWeeklySummary");
+
     protected LocalDate date;
     protected String day;
+    // whose logs the entry is saved to
+    protected final UserData user;
 
     // removed the incorrect getDay() method that caused infinite recursion
 
     public Tracker() {
-        this.date = LocalDate.now();
-        this.day = this.date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-        // this.day initialization moved to constructor
+        this(LocalDate.now());
     }
 
     // New ctor to allow creating entries for a specific date
     public Tracker(LocalDate date) {
+        this(UserData.local(), date);
+    }
+
+    // Entry for a specific user's logs
+    public Tracker(UserData user, LocalDate date) {
+        this.user = user;
         this.date = date;
         this.day = this.date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-        // this.day initialization moved to constructor
+    }
+
+    public UserData getUser() {
+        return user;
     }
 
     public LocalDate getDate() {
@@ -43,6 +60,20 @@ public abstract class Tracker {
     // Aggregate weekly summary across meals.txt, steps.txt, water.txt
     // startDateIso must be yyyy-MM-dd
     public static String generateWeeklySummary(String startDateIso) {
+        return generateWeeklySummary(UserData.local(), startDateIso);
+    }
+
+    // Weekly summary of one user's logs
+    public static String generateWeeklySummary(UserData user, String startDateIso) {
+        long t0 = System.nanoTime();
+        try {
+            return weeklySummary(user, startDateIso);
+        } finally {
+            SUMMARY_TIMER.recordSince(t0);
+        }
+    }
+
+    private static String weeklySummary(UserData user, String startDateIso) {
         DateTimeFormatter fmt = DateTimeFormatter.ISO_LOCAL_DATE;
         LocalDate start;
         try {
@@ -51,84 +82,16 @@ public abstract class Tracker {
             return "Invalid start date format. Use yyyy-MM-dd.";
         }
 
+        // per-day totals are kept in memory by the repository
+        FitLifeRepository.DayWindow week = user.repository().window(start, 7);
+
         double[] calPerDay = new double[7];
         int[] stepsPerDay = new int[7];
         double[] waterPerDay = new double[7]; // liters per day
-
-        // meals.txt expected format (new CalorieTracker): date,day,mealName,quantityGrams,calories,category
-        File meals = new File("meals.txt");
-        if (meals.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(meals))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = line.split(",");
-                    if (p.length >= 5) {
-                        try {
-                            LocalDate d = LocalDate.parse(p[0].trim(), fmt);
-                            int idx = (int) java.time.Duration.between(start.atStartOfDay(), d.atStartOfDay()).toDays();
-                            if (idx >= 0 && idx < 7) {
-                                // calories expected at index 4 in the new format
-                                double kcal = Double.parseDouble(p[4].trim());
-                                calPerDay[idx] += kcal;
-                            }
-                        } catch (Exception e) {
-                            // skip malformed line
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // ignore read errors
-            }
-        }
-
-        // steps.txt expected format: date,day,steps
-        File steps = new File("steps.txt");
-        if (steps.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(steps))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = line.split(",");
-                    if (p.length >= 3) {
-                        try {
-                            LocalDate d = LocalDate.parse(p[0].trim(), fmt);
-                            int idx = (int) java.time.Duration.between(start.atStartOfDay(), d.atStartOfDay()).toDays();
-                            if (idx >= 0 && idx < 7) {
-                                int s = Integer.parseInt(p[2].trim());
-                                stepsPerDay[idx] += s;
-                            }
-                        } catch (Exception e) {
-                            // skip malformed line
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // ignore
-            }
-        }
-
-        // water.txt expected format: date,day,liters  (tolerant parsing)
-        File water = new File("water.txt");
-        if (water.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(water))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] p = line.split(",");
-                    if (p.length >= 3) {
-                        try {
-                            LocalDate d = LocalDate.parse(p[0].trim(), fmt);
-                            int idx = (int) java.time.Duration.between(start.atStartOfDay(), d.atStartOfDay()).toDays();
-                            if (idx >= 0 && idx < 7) {
-                                double liters = Double.parseDouble(p[2].trim());
-                                waterPerDay[idx] += liters;
-                            }
-                        } catch (Exception e) {
-                            // skip malformed line
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // ignore
-            }
+        for (int i = 0; i < 7; i++) {
+            calPerDay[i] = week.calories(i);
+            stepsPerDay[i] = week.steps(i);
+            waterPerDay[i] = week.liters(i);
         }
 
         StringBuilder sb = new StringBuilder();
@@ -158,20 +121,20 @@ public abstract class Tracker {
 
         // health messages
         if (avgCal > 0) {
-            sb.append(avgCal > 2500 ? "Note: Your average calories are quite high. Consider dietary adjustments." : "Calorie intake looks reasonable.");
+            sb.append(avgCal > CALORIE_LIMIT ? "Note: Your average calories are quite high. Consider dietary adjustments." : "Calorie intake looks reasonable.");
             sb.append(System.lineSeparator());
         } else {
             sb.append("No calorie data for the week.").append(System.lineSeparator());
         }
 
-        if (avgSteps < 7500.0) {
+        if (avgSteps < STEPS_TARGET) {
             sb.append("Steps: Move a bit more and be healthy.").append(System.lineSeparator());
         } else {
             sb.append("Steps: Good job — keep it up!").append(System.lineSeparator());
         }
 
-        if (avgWaterLiters < 4.0) {
-            sb.append("Water: Try to drink more water daily (target ~4.0 L/day).");
+        if (avgWaterLiters < WATER_TARGET_LITERS) {
+            sb.append(String.format(Locale.ROOT, "Water: Try to drink more water daily (target ~%.1f L/day).", WATER_TARGET_LITERS));
         } else {
             sb.append("Water: Good hydration levels.");
         }
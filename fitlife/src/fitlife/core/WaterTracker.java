@@ -1,11 +1,12 @@
 package fitlife.core;
 
+import fitlife.data.FitLifeRepository;
 import fitlife.data.Savable;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import fitlife.data.UserData;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -17,8 +18,9 @@ public class WaterTracker extends Tracker implements Savable {
     // changed: store liters (double)
     private double liters;  // in liters
 
-    private static final String WATER_FILE = "water.txt";
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final Timer SAVE_TIMER = Metrics.timer("WaterTracker.saveToFile");
+    private static final Timer REPORT_TIMER = Metrics.timer("WaterTracker.generateWeeklyReport");
 
     // Use today's date
     public WaterTracker(double liters) {
@@ -26,6 +28,12 @@ public class WaterTracker extends Tracker implements Savable {
         this.liters = liters;
     }
 
+    // Water for a specific user's log and date
+    public WaterTracker(UserData user, LocalDate date, double liters) {
+        super(user, date);
+        this.liters = liters;
+    }
+
     public double getWaterAmount() {
         return liters;
     }
@@ -39,27 +47,44 @@ public class WaterTracker extends Tracker implements Savable {
 
     @Override
     public void saveToFile() throws IOException {
-        try (FileWriter fw = new FileWriter(WATER_FILE, true)) {
-            fw.write(getDataAsString() + System.lineSeparator());
+        long t0 = System.nanoTime();
+        try {
+            user.repository().append(FitLifeRepository.Log.WATER, getDataAsString());
+        } finally {
+            SAVE_TIMER.recordSince(t0);
         }
     }
 
     // Log for a specific date (dateIso = "yyyy-MM-dd"), tolerant to old two-column format
     public static void logDaily(String dateIso, double liters) throws IOException {
+        logDaily(UserData.local(), dateIso, liters);
+    }
+
+    public static void logDaily(UserData user, String dateIso, double liters) throws IOException {
         LocalDate d;
         try {
             d = LocalDate.parse(dateIso, DATE_FMT);
         } catch (DateTimeParseException ex) {
             d = LocalDate.now();
         }
-        String dayName = d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
-        try (FileWriter fw = new FileWriter(WATER_FILE, true)) {
-            fw.write(d.toString() + "," + dayName + "," + String.format(Locale.ROOT, "%.2f", liters) + System.lineSeparator());
-        }
+        new WaterTracker(user, d, liters).saveToFile();
     }
 
     // Generate a weekly report starting from startDateIso (inclusive). Average is over 7 days.
     public static String generateWeeklyReport(String startDateIso) {
+        return generateWeeklyReport(UserData.local(), startDateIso);
+    }
+
+    public static String generateWeeklyReport(UserData user, String startDateIso) {
+        long t0 = System.nanoTime();
+        try {
+            return weeklyReport(user, startDateIso);
+        } finally {
+            REPORT_TIMER.recordSince(t0);
+        }
+    }
+
+    private static String weeklyReport(UserData user, String startDateIso) {
         LocalDate start;
         try {
             start = LocalDate.parse(startDateIso, DATE_FMT);
@@ -69,34 +94,9 @@ public class WaterTracker extends Tracker implements Savable {
 
         double[] waterPerDay = new double[7]; // liters per day
 
-        File f = new File(WATER_FILE);
-        if (f.exists()) {
-            try (BufferedReader br = new BufferedReader(new FileReader(f))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 2) {
-                        try {
-                            LocalDate d = LocalDate.parse(parts[0].trim(), DATE_FMT);
-                            int idx = (int) java.time.Duration.between(start.atStartOfDay(), d.atStartOfDay()).toDays();
-                            if (idx >= 0 && idx < 7) {
-                                double val;
-                                if (parts.length >= 3) {
-                                    val = Double.parseDouble(parts[2].trim());
-                                } else {
-                                    // legacy format: date,amount (assume liters)
-                                    val = Double.parseDouble(parts[1].trim());
-                                }
-                                waterPerDay[idx] += val;
-                            }
-                        } catch (Exception e) {
-                            // skip malformed line
-                        }
-                    }
-                }
-            } catch (IOException e) {
-                // ignore read errors
-            }
+        FitLifeRepository.DayWindow week = user.repository().window(start, 7);
+        for (int i = 0; i < 7; i++) {
+            waterPerDay[i] = week.liters(i);
         }
 
         StringBuilder sb = new StringBuilder();
@@ -111,8 +111,10 @@ public class WaterTracker extends Tracker implements Savable {
         double average = total / 7.0;
         sb.append(String.format("Average daily water intake (over 7 days): %.2f L", average)).append(System.lineSeparator());
 
-        if (average < 4.0) {
-            sb.append("Advice: Drink more water to reach at least 4L per day.");
+        if (average < WATER_TARGET_LITERS) {
+            // 4.0 prints as "4L", as the report always read
+            String target = BigDecimal.valueOf(WATER_TARGET_LITERS).stripTrailingZeros().toPlainString();
+            sb.append("Advice: Drink more water to reach at least ").append(target).append("L per day.");
         } else {
             sb.append("Good job — your water intake is sufficient.");
         }
@@ -0,0 +1,262 @@
+package fitlife.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact fixed-width binary log for meals, steps and water entries.
+ *
+ * Layout: a 16 byte header (magic, format version, record kind, record size, creation
+ * stamp) followed by fixed-size little-endian records. Dates are stored as epoch-day ints
+ * and meal and category names as ids into a {@link NameDictionary}, so a scan is a bulk
+ * ByteBuffer walk that hands primitives to a {@link RecordVisitor} without allocating per
+ * record.
+ */
+public class BinaryLog {
+
+    public static final int MAGIC = 0x474F4C46; // "FLOG" little-endian
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public enum Kind {
+        // epochDay, nameId, categoryId, grams, calories
+        MEALS(1, 20),
+        // epochDay, steps
+        STEPS(2, 8),
+        // epochDay, liters
+        WATER(3, 12);
+
+        final byte id;
+        final int recordSize;
+
+        Kind(int id, int recordSize) {
+            this.id = (byte) id;
+            this.recordSize = recordSize;
+        }
+    }
+
+    /**
+     * Receives decoded records. Only the method matching the log kind is called.
+     */
+    public interface RecordVisitor {
+        default void meal(int epochDay, int nameId, int categoryId, int grams, int calories) {}
+        default void steps(int epochDay, int steps) {}
+        default void water(int epochDay, double liters) {}
+    }
+
+    private final Path path;
+    private final Kind kind;
+
+    public BinaryLog(Path path, Kind kind) {
+        this.path = path;
+        this.kind = kind;
+    }
+
+    // meals.txt -> meals.bin
+    public static Path pathFor(Path textFile) {
+        String name = textFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = (dot > 0) ? name.substring(0, dot) : name;
+        return textFile.resolveSibling(base + ".bin");
+    }
+
+    public Path getPath() { return path; }
+
+    public Kind getKind() { return kind; }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Number of complete records in the log (a torn trailing record is ignored).
+     */
+    public long recordCount() throws IOException {
+        if (!exists()) return 0;
+        long size = Files.size(path);
+        return size < HEADER_SIZE ? 0 : (size - HEADER_SIZE) / kind.recordSize;
+    }
+
+    /**
+     * Creation stamp from the header; changes whenever the log is rebuilt.
+     */
+    public long generation() throws IOException {
+        if (!exists()) return 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(ch);
+        }
+    }
+
+    /**
+     * Visit every record from {@code fromRecord} onwards.
+     * @return the record count after the scan, to pass as {@code fromRecord} next time
+     */
+    public long scan(long fromRecord, RecordVisitor visitor) throws IOException {
+        return scan(fromRecord, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visit the records from {@code fromRecord} up to, not including, {@code toRecord}.
+     * @return the record after the last one visited
+     */
+    public long scan(long fromRecord, long toRecord, RecordVisitor visitor) throws IOException {
+        if (!exists()) return 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            readHeader(ch);
+            int recSize = kind.recordSize;
+            long total = Math.min(toRecord, (ch.size() - HEADER_SIZE) / recSize);
+            long pos = HEADER_SIZE + fromRecord * recSize;
+            ByteBuffer buf = ByteBuffer.allocateDirect(recSize * 4096).order(ByteOrder.LITTLE_ENDIAN);
+            long remaining = total - fromRecord;
+            while (remaining > 0) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), remaining * recSize));
+                while (buf.hasRemaining()) {
+                    int n = ch.read(buf, pos + buf.position());
+                    if (n < 0) break;
+                }
+                buf.flip();
+                int count = buf.remaining() / recSize;
+                for (int i = 0; i < count; i++) {
+                    decode(buf, visitor);
+                }
+                pos += (long) count * recSize;
+                remaining -= count;
+                if (count == 0) break;
+            }
+            return total;
+        }
+    }
+
+    private void decode(ByteBuffer buf, RecordVisitor visitor) {
+        switch (kind) {
+            case MEALS:
+                visitor.meal(buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt());
+                break;
+            case STEPS:
+                visitor.steps(buf.getInt(), buf.getInt());
+                break;
+            case WATER:
+                visitor.water(buf.getInt(), buf.getDouble());
+                break;
+        }
+    }
+
+    // Validates the header and returns its creation stamp
+    private long readHeader(FileChannel ch) throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ch.read(h, 0);
+        h.flip();
+        if (h.remaining() < HEADER_SIZE || h.getInt() != MAGIC) {
+            throw new IOException(path + " is not a FitLife binary log");
+        }
+        short version = h.getShort();
+        if (version > VERSION) {
+            throw new IOException(path + " has unsupported format version " + version);
+        }
+        if (h.get() != kind.id || h.get() != kind.recordSize) {
+            throw new IOException(path + " does not hold " + kind + " records");
+        }
+        return h.getLong();
+    }
+
+    private static ByteBuffer header(Kind kind) {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putShort(VERSION).put(kind.id).put((byte) kind.recordSize).putLong(System.currentTimeMillis());
+        h.flip();
+        return h;
+    }
+
+    /**
+     * Open for appending. With {@code truncate} the log is recreated with a fresh header,
+     * otherwise the header is written only if the file is new.
+     */
+    public Appender openAppender(boolean truncate) throws IOException {
+        FileChannel ch = truncate
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try {
+            if (ch.size() == 0) {
+                ch.write(header(kind), 0);
+            } else {
+                readHeader(ch);
+            }
+            // drop a torn record left by an interrupted append
+            long end = HEADER_SIZE + (ch.size() - HEADER_SIZE) / kind.recordSize * kind.recordSize;
+            ch.truncate(end);
+            ch.position(end);
+            return new Appender(ch, kind, (end - HEADER_SIZE) / kind.recordSize);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Buffered writer of fixed-width records; bytes reach the file on flush or close.
+     */
+    public static class Appender implements Closeable {
+        private final FileChannel ch;
+        private final Kind kind;
+        private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private final long firstRecord;
+
+        Appender(FileChannel ch, Kind kind, long firstRecord) {
+            this.ch = ch;
+            this.kind = kind;
+            this.firstRecord = firstRecord;
+        }
+
+        // Index of the first record this appender writes
+        public long firstRecord() {
+            return firstRecord;
+        }
+
+        public void meal(long epochDay, int nameId, int categoryId, int grams, int calories) throws IOException {
+            require(Kind.MEALS);
+            buf.putInt((int) epochDay).putInt(nameId).putInt(categoryId).putInt(grams).putInt(calories);
+        }
+
+        public void steps(long epochDay, int steps) throws IOException {
+            require(Kind.STEPS);
+            buf.putInt((int) epochDay).putInt(steps);
+        }
+
+        public void water(long epochDay, double liters) throws IOException {
+            require(Kind.WATER);
+            buf.putInt((int) epochDay).putDouble(liters);
+        }
+
+        private void require(Kind k) throws IOException {
+            if (k != kind) throw new IllegalStateException("Cannot write " + k + " record to " + kind + " log");
+            if (buf.remaining() < kind.recordSize) flush();
+        }
+
+        public void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        // Flush and force the written records to the storage device
+        public void force() throws IOException {
+            flush();
+            ch.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package fitlife.data;
+
+import java.util.Arrays;
+
+/**
+ * Approximate counts of int keys in a fixed amount of memory.
+ *
+ * Each key is hashed into one counter per row and its estimate is the smallest of those
+ * counters, so an estimate is never below the true count and exceeds it by at most about
+ * 2 / width of the total with high probability. Updates are conservative: only the
+ * counters that are at the current minimum are raised, which keeps overestimates down for
+ * skewed streams such as food names, where a few foods make up most meals.
+ */
+public final class CountMinSketch {
+
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+        0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L
+    };
+
+    private final int width;
+    private final int depth;
+    private final int[] counters; // depth rows of width counters
+    private long total;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth number of rows, 1 to 8
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1) throw new IllegalArgumentException("width must be positive: " + width);
+        if (depth < 1 || depth > SEEDS.length) throw new IllegalArgumentException("depth must be 1 to " + SEEDS.length + ": " + depth);
+        int w = 1;
+        while (w < width) w <<= 1;
+        this.width = w;
+        this.depth = depth;
+        this.counters = new int[this.width * depth];
+    }
+
+    /**
+     * Add to the count of a key.
+     * @return the key's estimated count afterwards
+     */
+    public int add(int key, int count) {
+        int estimate = estimate(key);
+        long raised = Math.min(Integer.MAX_VALUE, (long) estimate + count);
+        for (int row = 0; row < depth; row++) {
+            int i = index(key, row);
+            if (counters[i] < raised) counters[i] = (int) raised;
+        }
+        total += count;
+        return (int) raised;
+    }
+
+    /**
+     * Estimated count of a key: never less than the true count.
+     */
+    public int estimate(int key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) min = Math.min(min, counters[index(key, row)]);
+        return min;
+    }
+
+    /**
+     * Sum of all counts added.
+     */
+    public long total() {
+        return total;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    private int index(int key, int row) {
+        long h = (key + 1L) * SEEDS[row];
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 29;
+        return row * width + (int) (h & (width - 1));
+    }
+}
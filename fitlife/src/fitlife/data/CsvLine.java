@@ -0,0 +1,289 @@
+package fitlife.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reusable cursor over one comma separated line, held as a range of bytes or of chars.
+ *
+ * {@link #reset} points the cursor at a line and records where its fields start and end;
+ * nothing is copied. Dates and numbers are then parsed straight from the range, and a
+ * malformed value comes back as {@link #INVALID} or NaN rather than as an exception, so
+ * reading a line allocates nothing unless a field is asked for as {@link #text}. Readers
+ * that skip a line call {@link #reject}, and {@link #lines} and {@link #malformed} count
+ * the lines read and skipped through this cursor.
+ *
+ * Field indexes follow {@code String.split(",")}, so trailing empty fields are not counted.
+ * The date and number accessors ignore spaces around a field; {@link #text} returns it as
+ * written.
+ */
+public final class CsvLine {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int MAX_FIELDS = 16;
+
+    // exactly one of these holds the current line
+    private ByteBuffer bytes;
+    private CharSequence chars;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private int fields;
+    private long lines;
+    private long malformed;
+
+    /**
+     * Point the cursor at bytes [from, to) of a buffer, without the line terminator.
+     * @return false for a blank line, which is not counted
+     */
+    public boolean reset(ByteBuffer buf, int from, int to) {
+        if (to > from && buf.get(to - 1) == '\r') to--;
+        if (to <= from) return false;
+        this.bytes = buf;
+        this.chars = null;
+        split(from, to);
+        return true;
+    }
+
+    /**
+     * Point the cursor at a whole line of text.
+     * @return false for a blank line, which is not counted
+     */
+    public boolean reset(CharSequence line) {
+        return reset(line, 0, line.length());
+    }
+
+    /**
+     * Point the cursor at chars [from, to) of some text, without the line terminator.
+     * @return false for a blank line, which is not counted
+     */
+    public boolean reset(CharSequence text, int from, int to) {
+        if (to > from && text.charAt(to - 1) == '\r') to--;
+        if (to <= from) return false;
+        this.chars = text;
+        this.bytes = null;
+        split(from, to);
+        return true;
+    }
+
+    private void split(int from, int to) {
+        int n = 0;
+        int s = from;
+        for (int i = from; i <= to && n < MAX_FIELDS; i++) {
+            if (i == to || at(i) == ',') {
+                starts[n] = s;
+                ends[n] = i;
+                n++;
+                s = i + 1;
+            }
+        }
+        // String.split drops trailing empty strings
+        while (n > 1 && ends[n - 1] == starts[n - 1]) n--;
+        fields = n;
+        lines++;
+    }
+
+    /**
+     * Count the current line as malformed.
+     */
+    public void reject() {
+        malformed++;
+    }
+
+    /** Non-blank lines this cursor was pointed at. */
+    public long lines() {
+        return lines;
+    }
+
+    /** Lines passed to {@link #reject}. */
+    public long malformed() {
+        return malformed;
+    }
+
+    public void clearCounts() {
+        lines = 0;
+        malformed = 0;
+    }
+
+    public int fieldCount() {
+        return fields;
+    }
+
+    /**
+     * Field decoded as a String (allocates; use only for values that must be kept).
+     */
+    public String text(int field) {
+        if (chars != null) return chars.subSequence(starts[field], ends[field]).toString();
+        int len = ends[field] - starts[field];
+        byte[] out = new byte[len];
+        for (int i = 0; i < len; i++) out[i] = bytes.get(starts[field] + i);
+        return new String(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ISO yyyy-MM-dd field as an epoch-day, or {@link #INVALID}.
+     */
+    public long epochDay(int field) {
+        int s = first(field);
+        if (last(field) - s != 10 || at(s + 4) != '-' || at(s + 7) != '-') {
+            return slowEpochDay(field);
+        }
+        int y = digits(s, 4);
+        int m = digits(s + 5, 2);
+        int d = digits(s + 8, 2);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > lengthOfMonth(y, m)) return INVALID;
+        return toEpochDay(y, m, d);
+    }
+
+    /**
+     * Field as an int with {@code Integer.parseInt} rules, or {@link #INVALID}.
+     */
+    public long intValue(int field) {
+        int s = first(field);
+        int e = last(field);
+        if (s == e) return INVALID;
+        boolean neg = false;
+        int first = at(s);
+        if (first == '-' || first == '+') {
+            neg = first == '-';
+            if (++s == e) return INVALID;
+        }
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int c = at(i) - '0';
+            if (c < 0 || c > 9) return INVALID;
+            v = v * 10 + c;
+            if (v > (long) Integer.MAX_VALUE + 1) return INVALID;
+        }
+        v = neg ? -v : v;
+        return (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) ? INVALID : v;
+    }
+
+    /**
+     * Field as a double with {@code Double.parseDouble} rules, or NaN if malformed.
+     * Plain decimals are parsed from the range; anything else falls back to the JDK.
+     */
+    public double doubleValue(int field) {
+        int s = first(field);
+        int e = last(field);
+        if (s == e) return Double.NaN;
+        int i = s;
+        boolean neg = false;
+        int first = at(i);
+        if (first == '-' || first == '+') {
+            neg = first == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean sawDigit = false;
+        for (; i < e; i++) {
+            int b = at(i);
+            if (b == '.' && !dot) {
+                dot = true;
+            } else if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                // leading zeros do not count towards precision
+                if ((mantissa != 0 || b != '0') && ++digits > 15) return slowDouble(field);
+                mantissa = mantissa * 10 + (b - '0');
+                if (dot && ++scale >= POW10.length) return slowDouble(field);
+            } else {
+                return slowDouble(field);
+            }
+        }
+        if (!sawDigit) return Double.NaN; // e.g. "-" or "."
+        // both operands are exact doubles, so a single division rounds correctly
+        double v = mantissa / POW10[scale];
+        return neg ? -v : v;
+    }
+
+    private int at(int i) {
+        return (bytes != null) ? bytes.get(i) : chars.charAt(i);
+    }
+
+    // first non-blank position of a field
+    private int first(int field) {
+        int s = starts[field];
+        int e = ends[field];
+        while (s < e && isBlank(at(s))) s++;
+        return s;
+    }
+
+    // end of a field, excluding trailing blanks
+    private int last(int field) {
+        int s = starts[field];
+        int e = ends[field];
+        while (e > s && isBlank(at(e - 1))) e--;
+        return e;
+    }
+
+    private double slowDouble(int field) {
+        try {
+            return Double.parseDouble(text(field));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private long slowEpochDay(int field) {
+        try {
+            return LocalDate.parse(text(field).trim()).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            return INVALID;
+        }
+    }
+
+    private int digits(int from, int count) {
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int c = at(i) - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    static int lengthOfMonth(int y, int m) {
+        switch (m) {
+            case 2:
+                boolean leap = (y % 4 == 0) && (y % 100 != 0 || y % 400 == 0);
+                return leap ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Same arithmetic as LocalDate.toEpochDay without creating a LocalDate
+    static long toEpochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            boolean leap = (y % 4 == 0) && (y % 100 != 0 || y % 400 == 0);
+            if (!leap) total--;
+        }
+        return total - 719528; // days from year 0 to 1970
+    }
+}
@@ -0,0 +1,305 @@
+package fitlife.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Sparse date index kept next to a text log as {@code <file>.idx}.
+ *
+ * The log is cut into blocks of roughly {@link #BLOCK_BYTES} on line boundaries and the
+ * sidecar stores each block's byte offset with the smallest and largest epoch-day found in
+ * it. Entries are not required to be in date order; a range lookup simply returns the
+ * blocks whose day span overlaps the range, so a query for "today" or "the last 7 days"
+ * on a chronologically appended log touches only the last block or two.
+ *
+ * {@link FitLifeRepository} reads through it while its history is not loaded, and its
+ * writer extends it after every append with the days it just wrote. Lookups catch up with
+ * bytes appended by other programs and rebuild the index from scratch if the log shrank
+ * or its tail no longer matches what was indexed.
+ */
+public class DateIndex {
+
+    static final int BLOCK_BYTES = 16 * 1024;
+
+    private static final int MAGIC = 0x58444946; // "FIDX" little-endian
+    private static final short VERSION = 1;
+    // magic, version, reserved, covered length, tail crc, block count
+    private static final int HEADER_SIZE = 24;
+    // block offset, min day, max day
+    private static final int ENTRY_SIZE = 16;
+    private static final int TAIL_CHECK_BYTES = 64;
+
+    private static final Map<Path, DateIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final Path data;
+    private final Path sidecar;
+
+    private long[] offsets = new long[16];
+    private int[] minDays = new int[16];
+    private int[] maxDays = new int[16];
+    private int blocks;
+    private long covered;      // bytes of the log described by the index
+    private int storedCrc;     // tail CRC of the log at the time it was indexed
+    private boolean loaded;
+
+    private DateIndex(Path data) {
+        this.data = data;
+        this.sidecar = data.resolveSibling(data.getFileName() + ".idx");
+    }
+
+    /**
+     * Shared index for the given log file.
+     */
+    public static DateIndex of(Path data) {
+        return INDEXES.computeIfAbsent(data.toAbsolutePath().normalize(), DateIndex::new);
+    }
+
+    public Path getSidecar() {
+        return sidecar;
+    }
+
+    /**
+     * Index any bytes appended to the log since the last call and persist the sidecar.
+     */
+    public synchronized void update() throws IOException {
+        load();
+        if (!Files.exists(data)) {
+            if (blocks > 0 || covered > 0) {
+                clear();
+                Files.deleteIfExists(sidecar);
+            }
+            return;
+        }
+        long size = Files.size(data);
+        if (size < covered || !tailMatches()) {
+            clear();
+        }
+        if (size == covered) return;
+
+        // reopen the last block if it still has room so blocks stay close to BLOCK_BYTES
+        int firstDirty = blocks;
+        long start = covered;
+        if (blocks > 0 && covered - offsets[blocks - 1] < BLOCK_BYTES) {
+            blocks--;
+            firstDirty = blocks;
+            start = offsets[blocks];
+        }
+        indexFrom(start, size);
+        covered = size;
+        persist(firstDirty);
+    }
+
+    /**
+     * Called by the writer after appending bytes [start, end) holding entries dated
+     * {@code minDay}..{@code maxDay} (none if {@code minDay > maxDay}). Extends the index
+     * without reading the log back; if the index does not end where the append began, it
+     * is left for the next lookup to catch up. Failures are ignored for the same reason.
+     */
+    public synchronized void appended(long start, long end, long minDay, long maxDay) {
+        try {
+            load();
+            if (covered != start || !tailMatches()) return;
+            int firstDirty = blocks - 1;
+            if (blocks == 0 || start - offsets[blocks - 1] >= BLOCK_BYTES) {
+                openBlock(start);
+                firstDirty = blocks - 1;
+            }
+            if (minDay <= maxDay) {
+                minDays[blocks - 1] = (int) Math.min(minDays[blocks - 1], minDay);
+                maxDays[blocks - 1] = (int) Math.max(maxDays[blocks - 1], maxDay);
+            }
+            covered = end;
+            persist(firstDirty);
+        } catch (IOException e) {
+            // indexed lazily on the next lookup
+        }
+    }
+
+    /**
+     * Byte ranges {start, end} of the log that may hold entries dated between the two
+     * epoch-days (inclusive). Adjacent blocks are merged into one range.
+     */
+    public synchronized List<long[]> ranges(long fromDay, long toDay) throws IOException {
+        update();
+        List<long[]> out = new ArrayList<>();
+        for (int i = 0; i < blocks; i++) {
+            if (maxDays[i] < fromDay || minDays[i] > toDay) continue;
+            long s = offsets[i];
+            long e = (i + 1 < blocks) ? offsets[i + 1] : covered;
+            if (!out.isEmpty() && out.get(out.size() - 1)[1] == s) {
+                out.get(out.size() - 1)[1] = e;
+            } else {
+                out.add(new long[] {s, e});
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Scan the lines of the blocks overlapping the date range. The visitor still filters by
+     * date, since a block may also hold entries outside the range.
+     */
+    public void scan(long fromDay, long toDay, CsvLine line, MappedLineScanner.LineVisitor visitor) throws IOException {
+        for (long[] r : ranges(fromDay, toDay)) {
+            MappedLineScanner.scan(data, r[0], r[1], line, visitor);
+        }
+    }
+
+    /**
+     * Offset where the last {@code n} blocks of the log begin, 0 if it has no more than
+     * {@code n}; the bytes from there to {@link #covered()} hold its most recent lines.
+     */
+    public synchronized long tail(int n) throws IOException {
+        update();
+        return (n < blocks) ? offsets[blocks - n] : 0;
+    }
+
+    // Bytes of the log described by the index as of the last update
+    public synchronized long covered() {
+        return covered;
+    }
+
+    private void clear() {
+        blocks = 0;
+        covered = 0;
+    }
+
+    // Scan [start, size) of the log, opening a new block whenever the current one is full
+    private void indexFrom(long start, long size) throws IOException {
+        try (FileChannel ch = FileChannel.open(data, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            byte[] line = new byte[256];
+            ByteBuffer view = ByteBuffer.wrap(line);
+            CsvLine cursor = new CsvLine();
+            int lineLen = 0;
+            long lineStart = start;
+            long pos = start;
+            openBlock(start);
+            while (pos < size) {
+                buf.clear();
+                int n = ch.read(buf, pos);
+                if (n <= 0) break;
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    byte b = buf.get();
+                    pos++;
+                    if (b == '\n') {
+                        if (lineStart - offsets[blocks - 1] >= BLOCK_BYTES) openBlock(lineStart);
+                        if (cursor.reset(view, 0, lineLen)) record(cursor);
+                        lineLen = 0;
+                        lineStart = pos;
+                    } else {
+                        if (lineLen == line.length) {
+                            line = Arrays.copyOf(line, lineLen * 2);
+                            view = ByteBuffer.wrap(line);
+                        }
+                        line[lineLen++] = b;
+                    }
+                }
+            }
+            if (lineLen > 0) {
+                if (lineStart - offsets[blocks - 1] >= BLOCK_BYTES) openBlock(lineStart);
+                if (cursor.reset(view, 0, lineLen)) record(cursor);
+            }
+        }
+    }
+
+    private void openBlock(long offset) {
+        if (blocks == offsets.length) {
+            offsets = Arrays.copyOf(offsets, blocks * 2);
+            minDays = Arrays.copyOf(minDays, blocks * 2);
+            maxDays = Arrays.copyOf(maxDays, blocks * 2);
+        }
+        offsets[blocks] = offset;
+        minDays[blocks] = Integer.MAX_VALUE;
+        maxDays[blocks] = Integer.MIN_VALUE;
+        blocks++;
+    }
+
+    // Widen the current block's day span with the date in the first field of the line
+    private void record(CsvLine line) {
+        long day = line.epochDay(0);
+        if (day == CsvLine.INVALID) return; // lines without a date are never returned by a date query
+        int b = blocks - 1;
+        minDays[b] = Math.min(minDays[b], (int) day);
+        maxDays[b] = Math.max(maxDays[b], (int) day);
+    }
+
+    private void load() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        if (!Files.exists(sidecar)) return;
+        byte[] bytes = Files.readAllBytes(sidecar);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < HEADER_SIZE || buf.getInt() != MAGIC || buf.getShort() != VERSION) {
+            return; // unreadable sidecar, rebuilt on the next update
+        }
+        buf.getShort();
+        long cov = buf.getLong();
+        int crc = buf.getInt();
+        int count = buf.getInt();
+        if (count < 0 || bytes.length < HEADER_SIZE + (long) count * ENTRY_SIZE) return;
+        offsets = new long[Math.max(16, count)];
+        minDays = new int[offsets.length];
+        maxDays = new int[offsets.length];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = buf.getLong();
+            minDays[i] = buf.getInt();
+            maxDays[i] = buf.getInt();
+        }
+        blocks = count;
+        covered = cov;
+        storedCrc = crc;
+    }
+
+    private boolean tailMatches() throws IOException {
+        return covered == 0 || tailCrc() == storedCrc;
+    }
+
+    // CRC of the last indexed bytes of the log, used to detect a replaced or rewritten file
+    private int tailCrc() throws IOException {
+        if (covered == 0 || !Files.exists(data)) return 0;
+        int len = (int) Math.min(TAIL_CHECK_BYTES, covered);
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        try (FileChannel ch = FileChannel.open(data, StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && ch.read(buf, covered - len + buf.position()) > 0) {
+                // keep reading until the check window is filled
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        return (int) crc.getValue();
+    }
+
+    // Rewrite the header and every entry from firstDirty on, leaving earlier entries alone
+    private void persist(int firstDirty) throws IOException {
+        try (FileChannel ch = FileChannel.open(sidecar, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (ch.size() < HEADER_SIZE + (long) firstDirty * ENTRY_SIZE) firstDirty = 0;
+            ByteBuffer entries = ByteBuffer.allocate((blocks - firstDirty) * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = firstDirty; i < blocks; i++) {
+                entries.putLong(offsets[i]).putInt(minDays[i]).putInt(maxDays[i]);
+            }
+            entries.flip();
+            ch.write(entries, HEADER_SIZE + (long) firstDirty * ENTRY_SIZE);
+            ch.truncate(HEADER_SIZE + (long) blocks * ENTRY_SIZE);
+
+            storedCrc = tailCrc();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                  .putLong(covered).putInt(storedCrc).putInt(blocks);
+            header.flip();
+            ch.write(header, 0);
+        }
+    }
+}
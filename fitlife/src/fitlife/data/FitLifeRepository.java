@@ -0,0 +1,1427 @@
+package fitlife.data;
+
+import fitlife.config.StorageConfig;
+import fitlife.metrics.Counter;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * In-memory model of the meals, steps and water logs.
+ *
+ * History is loaded once into primitive entry tables, each entry chained to the other
+ * entries of its day, plus per-day total columns keyed by epoch-day. Savable trackers write
+ * through {@link #append}, which appends to the log on disk and folds the same line into
+ * memory, so reports, dashboard cards and metrics never re-read the files. Lines appended
+ * by other programs are picked up by {@link #sync()}, which only reads the new bytes.
+ *
+ * Until the history is first needed, {@link #window} and {@link #snapshot} read only the
+ * blocks of the text logs that a {@link DateIndex} sidecar lists for their dates, so the
+ * dashboard and the weekly reports start with a seek and a short read instead of a full
+ * load. The writer extends each sidecar with the days it appends.
+ *
+ * The disk side of an append is write-behind: lines are queued and written in batches by
+ * a background thread, with the durability configured in {@link StorageConfig}. Call
+ * {@link #flush()} when the files themselves must be up to date. The writer holds the
+ * repository lock only to take a batch from memory and to account for it afterwards; the
+ * appends and fsync run outside it, so readers never wait on the disk.
+ *
+ * Lines are read tolerantly: fields are trimmed, calories may be decimal and legacy
+ * two-column water lines ({@code date,liters}) count as liters.
+ *
+ * A full load parses the three text logs at the same time and splits large logs into
+ * line-aligned byte ranges that are parsed in parallel, then folded in file order.
+ * Loads, incremental syncs and batch writes are timed, and lines read and skipped as
+ * malformed are counted, in {@link Metrics}.
+ *
+ * Meal names are also grouped into foods, ignoring case and extra spaces, with meal and
+ * calorie counts per food kept up to date as entries are added. The most frequent foods
+ * of the whole history are tracked in a {@link TopK} heap, so {@link #topFoods} answers
+ * without sorting every food.
+ */
+public class FitLifeRepository {
+
+    public enum Log {
+        MEALS("meals.txt", BinaryLog.Kind.MEALS),
+        STEPS("steps.txt", BinaryLog.Kind.STEPS),
+        WATER("water.txt", BinaryLog.Kind.WATER);
+
+        final String fileName;
+        final BinaryLog.Kind kind;
+
+        Log(String fileName, BinaryLog.Kind kind) {
+            this.fileName = fileName;
+            this.kind = kind;
+        }
+    }
+
+    public interface MealVisitor {
+        void meal(long epochDay, String name, double grams, double calories, String category);
+    }
+
+    public interface StepsVisitor {
+        void steps(long epochDay, int steps);
+    }
+
+    public interface WaterVisitor {
+        void water(long epochDay, double liters);
+    }
+
+    // Receives parsed log entries: memory itself, or a buffer filled on a loader thread
+    private interface EntrySink {
+        void meal(long epochDay, String name, String category, double grams, double calories);
+
+        void steps(long epochDay, int steps);
+
+        void water(long epochDay, double liters);
+    }
+
+    // text logs smaller than this per core are parsed as one range
+    private static final long MIN_RANGE_BYTES = 4L * 1024 * 1024;
+
+    // foods tracked for the whole history; longer lists are counted from the entries
+    private static final int TOP_FOODS_TRACKED = 32;
+
+    // count-min sketch size for approximate top foods: 16 KB, about 0.2% error
+    private static final int SKETCH_WIDTH = 1024;
+    private static final int SKETCH_DEPTH = 4;
+
+    /*
+     * Dates a log line may carry. Anything outside is taken for a typo, such as year 0025
+     * or 9999, and the line is skipped as malformed, so one bad line can neither allocate
+     * huge day columns nor anchor them centuries away from the real history.
+     */
+    public static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    public static final LocalDate MAX_DATE = LocalDate.of(2199, 12, 31);
+    private static final long MIN_DAY = MIN_DATE.toEpochDay();
+    private static final long MAX_DAY = MAX_DATE.toEpochDay();
+
+    private static final FitLifeRepository SHARED = new FitLifeRepository(Paths.get(""));
+
+    private static final Timer LOAD_TIMER = Metrics.timer("FitLifeRepository.load");
+    private static final Timer SYNC_TIMER = Metrics.timer("FitLifeRepository.sync");
+    private static final Timer WRITE_TIMER = Metrics.timer("FitLifeRepository.writeBatch");
+    private static final Counter LINES_READ = Metrics.counter("FitLifeRepository.linesRead");
+    private static final Counter MALFORMED_LINES = Metrics.counter("FitLifeRepository.malformedLines");
+
+    private final Feed meals;
+    private final Feed steps;
+    private final Feed water;
+    private final NameDictionary binaryNames;
+
+    // interned meal and category names
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    // foods: meal names normalized for counting, named after their first spelling
+    private final Map<String, Integer> foodIds = new HashMap<>();
+    private final List<String> foodNames = new ArrayList<>();
+    private int[] nameFood = new int[0]; // food id + 1 of each interned name, 0 if not resolved yet
+    private int[] foodMeals = new int[0];
+    private double[] foodCalories = new double[0];
+    private final TopK topFoods = new TopK(TOP_FOODS_TRACKED);
+
+    // entry tables, in log order
+    private int mealCount;
+    private int[] mealDay = new int[0];
+    private int[] mealName = new int[0];
+    private int[] mealCategory = new int[0];
+    private double[] mealGrams = new double[0];
+    private double[] mealCalories = new double[0];
+    private int[] mealNext = new int[0];
+
+    private int stepsCount;
+    private int[] stepsDay = new int[0];
+    private int[] stepsValue = new int[0];
+    private int[] stepsNext = new int[0];
+
+    private int waterCount;
+    private int[] waterDay = new int[0];
+    private double[] waterLiters = new double[0];
+    private int[] waterNext = new int[0];
+
+    // per-day columns; chain heads and tails hold entry index + 1 so that 0 means none
+    private long baseDay;
+    private int span;
+    private double[] dayCalories = new double[0];
+    private int[] dayMeals = new int[0];
+    private int[] daySteps = new int[0];
+    private double[] dayLiters = new double[0];
+    private int[] mealHead = new int[0];
+    private int[] mealTail = new int[0];
+    private int[] stepsHead = new int[0];
+    private int[] stepsTail = new int[0];
+    private int[] waterHead = new int[0];
+    private int[] waterTail = new int[0];
+
+    private boolean loaded;
+    // bumped whenever memory is reloaded from disk, so queued lines know their entries are gone
+    private long loads;
+
+    private final WriteBehindQueue<PendingLine> writes;
+
+    public FitLifeRepository(Path dir) {
+        this.meals = new Feed(dir.resolve(Log.MEALS.fileName), Log.MEALS.kind);
+        this.steps = new Feed(dir.resolve(Log.STEPS.fileName), Log.STEPS.kind);
+        this.water = new Feed(dir.resolve(Log.WATER.fileName), Log.WATER.kind);
+        this.binaryNames = new NameDictionary(dir.resolve("meals.names"));
+        this.writes = new WriteBehindQueue<>("fitlife-writer", StorageConfig.getDurability(), this::writeBatch);
+    }
+
+    // Repository over the data files in the working directory
+    public static FitLifeRepository get() {
+        return SHARED;
+    }
+
+    /**
+     * Fold entries appended by other writers into memory. The first call loads the full
+     * history; later calls only read new bytes, or reload if a log shrank or was replaced.
+     */
+    public synchronized void sync() {
+        long start = System.nanoTime();
+        boolean reload = !loaded || meals.isStale() || steps.isStale() || water.isStale();
+        // a reload reads whole logs, so appends being written must land first
+        while (reload && (meals.writing + steps.writing + water.writing) > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            reload = !loaded || meals.isStale() || steps.isStale() || water.isStale();
+        }
+        if (reload) {
+            clear();
+            loaded = true;
+        }
+        long lines = meals.lines() + steps.lines() + water.lines();
+        long malformed = meals.malformed() + steps.malformed() + water.malformed();
+        if (reload) {
+            loadInParallel();
+        }
+        meals.readNew(lineVisitor(Log.MEALS), binaryVisitor);
+        steps.readNew(lineVisitor(Log.STEPS), binaryVisitor);
+        water.readNew(lineVisitor(Log.WATER), binaryVisitor);
+
+        long read = meals.lines() + steps.lines() + water.lines() - lines;
+        if (read > 0) {
+            LINES_READ.add(read);
+            MALFORMED_LINES.add(meals.malformed() + steps.malformed() + water.malformed() - malformed);
+        }
+        (reload ? LOAD_TIMER : SYNC_TIMER).recordSince(start);
+    }
+
+    /**
+     * Append one CSV line to a log. It is visible to readers at once and queued for the
+     * disk, where it is written as given with the binary log kept in step. The first call
+     * loads the history and may wait for a load already running, so interactive callers
+     * should not make it on the event thread.
+     */
+    public void append(Log log, String line) throws IOException {
+        byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        PendingLine pending;
+        synchronized (this) {
+            // readers catch up with other writers; appending only needs history loaded
+            if (!loaded) sync();
+            int before = count(log);
+            MappedLineScanner.scan(bytes, feed(log).cursor, lineVisitor(log));
+            pending = new PendingLine(log, bytes, before, count(log), loads);
+        }
+        // outside the lock: a SYNC submit waits for the writer, which needs it
+        writes.submit(pending);
+    }
+
+    /**
+     * Block until every appended line is on disk.
+     */
+    public void flush() throws IOException {
+        writes.flush();
+    }
+
+    // The text log, binary log and name dictionary of this directory, for LogMigrator
+    Path textPath(Log log) {
+        return feed(log).text.path;
+    }
+
+    BinaryLog binaryLog(Log log) {
+        return feed(log).binary;
+    }
+
+    NameDictionary binaryNames() {
+        return binaryNames;
+    }
+
+    /**
+     * Per-day totals for {@code days} consecutive days starting at {@code start}.
+     */
+    public synchronized DayWindow window(LocalDate start, int days) {
+        if (!loaded) {
+            DayWindow w = readWindow(start, days);
+            if (w != null) return w;
+        }
+        sync();
+        DayWindow w = new DayWindow(start, days);
+        long first = start.toEpochDay();
+        for (int i = 0; i < days; i++) {
+            int idx = index(first + i);
+            if (idx < 0) continue;
+            w.calories[i] = dayCalories[idx];
+            w.mealCount[i] = dayMeals[idx];
+            w.steps[i] = daySteps[idx];
+            w.stepsEntries[i] = countChain(stepsHead[idx], stepsNext);
+            w.liters[i] = dayLiters[idx];
+            w.waterEntries[i] = countChain(waterHead[idx], waterNext);
+        }
+        return w;
+    }
+
+    public synchronized void forEachMeal(LocalDate from, LocalDate to, MealVisitor visitor) {
+        sync();
+        for (long d = from.toEpochDay(); d <= to.toEpochDay(); d++) {
+            int idx = index(d);
+            if (idx < 0) continue;
+            for (int e = mealHead[idx]; e != 0; e = mealNext[e - 1]) {
+                int i = e - 1;
+                visitor.meal(mealDay[i], names.get(mealName[i]), mealGrams[i], mealCalories[i], names.get(mealCategory[i]));
+            }
+        }
+    }
+
+    public synchronized void forEachSteps(LocalDate from, LocalDate to, StepsVisitor visitor) {
+        sync();
+        for (long d = from.toEpochDay(); d <= to.toEpochDay(); d++) {
+            int idx = index(d);
+            if (idx < 0) continue;
+            for (int e = stepsHead[idx]; e != 0; e = stepsNext[e - 1]) {
+                visitor.steps(stepsDay[e - 1], stepsValue[e - 1]);
+            }
+        }
+    }
+
+    public synchronized void forEachWater(LocalDate from, LocalDate to, WaterVisitor visitor) {
+        sync();
+        for (long d = from.toEpochDay(); d <= to.toEpochDay(); d++) {
+            int idx = index(d);
+            if (idx < 0) continue;
+            for (int e = waterHead[idx]; e != 0; e = waterNext[e - 1]) {
+                visitor.water(waterDay[e - 1], waterLiters[e - 1]);
+            }
+        }
+    }
+
+    /**
+     * The {@code k} foods eaten most often from {@code from} to {@code to}, most frequent
+     * first, with their meal and calorie totals.
+     */
+    public List<FoodTotal> topFoods(LocalDate from, LocalDate to, int k) {
+        return topFoods(from, to, k, false);
+    }
+
+    /**
+     * Same, optionally approximate: the foods are then picked with a fixed-size count-min
+     * sketch instead of one counter per distinct food, and may miss a food whose count is
+     * within the sketch error of the last one picked. The totals reported are exact.
+     */
+    public synchronized List<FoodTotal> topFoods(LocalDate from, LocalDate to, int k, boolean approximate) {
+        sync();
+        List<FoodTotal> out = new ArrayList<>();
+        if (k <= 0 || span == 0) return out;
+        long first = Math.max(from.toEpochDay(), baseDay);
+        long last = Math.min(to.toEpochDay(), baseDay + span - 1);
+        if (first > last) return out;
+        if (first == baseDay && last == baseDay + span - 1 && k <= TOP_FOODS_TRACKED) {
+            // the whole history: already counted
+            int[] ids = topFoods.ids();
+            for (int i = 0; i < Math.min(k, ids.length); i++) {
+                out.add(new FoodTotal(foodNames.get(ids[i]), foodMeals[ids[i]], foodCalories[ids[i]]));
+            }
+            return out;
+        }
+        TopK top = new TopK(k);
+        if (approximate) {
+            CountMinSketch sketch = new CountMinSketch(SKETCH_WIDTH, SKETCH_DEPTH);
+            for (long d = first; d <= last; d++) {
+                for (int e = mealHead[index(d)]; e != 0; e = mealNext[e - 1]) {
+                    int food = nameFood[mealName[e - 1]] - 1;
+                    top.offer(food, sketch.add(food, 1));
+                }
+            }
+            // exact totals for the foods picked
+            int[] ids = top.ids();
+            int[] meals = new int[ids.length];
+            double[] calories = new double[ids.length];
+            for (long d = first; d <= last; d++) {
+                for (int e = mealHead[index(d)]; e != 0; e = mealNext[e - 1]) {
+                    int food = nameFood[mealName[e - 1]] - 1;
+                    if (top.count(food) < 0) continue;
+                    int i = 0;
+                    while (ids[i] != food) i++;
+                    meals[i]++;
+                    calories[i] += mealCalories[e - 1];
+                }
+            }
+            for (int i = 0; i < ids.length; i++) out.add(new FoodTotal(foodNames.get(ids[i]), meals[i], calories[i]));
+            out.sort((a, b) -> Integer.compare(b.meals(), a.meals()));
+            return out;
+        }
+        int[] meals = new int[foodNames.size()];
+        double[] calories = new double[foodNames.size()];
+        for (long d = first; d <= last; d++) {
+            for (int e = mealHead[index(d)]; e != 0; e = mealNext[e - 1]) {
+                int food = nameFood[mealName[e - 1]] - 1;
+                meals[food]++;
+                calories[food] += mealCalories[e - 1];
+            }
+        }
+        for (int food = 0; food < meals.length; food++) {
+            if (meals[food] > 0) top.offer(food, meals[food]);
+        }
+        for (int food : top.ids()) out.add(new FoodTotal(foodNames.get(food), meals[food], calories[food]));
+        return out;
+    }
+
+    /**
+     * Lines of a text log skipped as malformed since it was last loaded, e.g. with a bad
+     * date or a missing number. They stay in the file but are not counted anywhere.
+     */
+    public synchronized long malformedLines(Log log) {
+        sync();
+        return feed(log).malformed();
+    }
+
+    /**
+     * Entries logged for one day, formatted as the trackers write them.
+     */
+    public synchronized List<String> linesFor(Log log, LocalDate day) {
+        sync();
+        return lines(log, day);
+    }
+
+    /**
+     * The last {@code n} entries of a log in the order they were written.
+     */
+    public synchronized List<String> recentLines(Log log, int n) {
+        sync();
+        return recent(log, n);
+    }
+
+    /**
+     * What the dashboard shows, read in one pass under one lock: the day's entries of every
+     * log and the last {@code recent} meals and steps entries.
+     */
+    public synchronized DaySnapshot snapshot(LocalDate day, int recent) {
+        if (!loaded) {
+            DaySnapshot s = readSnapshot(day, recent);
+            if (s != null) return s;
+        }
+        sync();
+        return new DaySnapshot(day, lines(Log.MEALS, day), lines(Log.STEPS, day), lines(Log.WATER, day),
+                recent(Log.MEALS, recent), recent(Log.STEPS, recent));
+    }
+
+    // ---- reads through the date indexes, before the history is loaded ----
+
+    // True if every log is read from text, which is what the date indexes describe
+    private boolean indexed() {
+        return !meals.binary.exists() && !steps.binary.exists() && !water.binary.exists();
+    }
+
+    // window() from the indexed blocks; null if the logs cannot be read that way
+    private DayWindow readWindow(LocalDate start, int days) {
+        if (!indexed()) return null;
+        DayWindow w = new DayWindow(start, days);
+        long first = start.toEpochDay();
+        long last = first + days - 1;
+        EntrySink sink = new EntrySink() {
+            @Override
+            public void meal(long epochDay, String name, String category, double grams, double calories) {
+                if (epochDay < first || epochDay > last) return;
+                int i = (int) (epochDay - first);
+                w.calories[i] += calories;
+                w.mealCount[i]++;
+            }
+
+            @Override
+            public void steps(long epochDay, int steps) {
+                if (epochDay < first || epochDay > last) return;
+                int i = (int) (epochDay - first);
+                w.steps[i] += steps;
+                w.stepsEntries[i]++;
+            }
+
+            @Override
+            public void water(long epochDay, double liters) {
+                if (epochDay < first || epochDay > last) return;
+                int i = (int) (epochDay - first);
+                w.liters[i] += liters;
+                w.waterEntries[i]++;
+            }
+        };
+        try {
+            for (Log log : Log.values()) {
+                feed(log).index.scan(first, last, new CsvLine(), lineVisitor(log, sink));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return w;
+    }
+
+    // snapshot() from the indexed blocks; null if the logs cannot be read that way
+    private DaySnapshot readSnapshot(LocalDate day, int recent) {
+        if (!indexed()) return null;
+        long d = day.toEpochDay();
+        try {
+            return new DaySnapshot(day, readDay(Log.MEALS, d), readDay(Log.STEPS, d), readDay(Log.WATER, d),
+                    readRecent(Log.MEALS, recent), readRecent(Log.STEPS, recent));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private List<String> readDay(Log log, long day) throws IOException {
+        FormattedLines out = new FormattedLines(day, day);
+        feed(log).index.scan(day, day, new CsvLine(), lineVisitor(log, out));
+        return out.lines;
+    }
+
+    // The last n entries, from the last block back as far as needed to find them
+    private List<String> readRecent(Log log, int n) throws IOException {
+        DateIndex index = feed(log).index;
+        FormattedLines out;
+        int blocks = 1;
+        while (true) {
+            long from = index.tail(blocks);
+            out = new FormattedLines(MIN_DAY, MAX_DAY);
+            MappedLineScanner.scan(feed(log).text.path, from, index.covered(), new CsvLine(), lineVisitor(log, out));
+            if (out.lines.size() >= n || from == 0) break;
+            blocks *= 2;
+        }
+        return out.lines.subList(Math.max(0, out.lines.size() - n), out.lines.size());
+    }
+
+    private List<String> lines(Log log, LocalDate day) {
+        List<String> out = new ArrayList<>();
+        int idx = index(day.toEpochDay());
+        if (idx < 0) return out;
+        switch (log) {
+            case MEALS:
+                for (int e = mealHead[idx]; e != 0; e = mealNext[e - 1]) out.add(formatMeal(e - 1));
+                break;
+            case STEPS:
+                for (int e = stepsHead[idx]; e != 0; e = stepsNext[e - 1]) out.add(formatSteps(e - 1));
+                break;
+            case WATER:
+                for (int e = waterHead[idx]; e != 0; e = waterNext[e - 1]) out.add(formatWater(e - 1));
+                break;
+        }
+        return out;
+    }
+
+    private List<String> recent(Log log, int n) {
+        List<String> out = new ArrayList<>();
+        int total = count(log);
+        for (int i = Math.max(0, total - n); i < total; i++) {
+            switch (log) {
+                case MEALS: out.add(formatMeal(i)); break;
+                case STEPS: out.add(formatSteps(i)); break;
+                case WATER: out.add(formatWater(i)); break;
+            }
+        }
+        return out;
+    }
+
+    // ---- loading ----
+
+    private final BinaryLog.RecordVisitor binaryVisitor = new BinaryLog.RecordVisitor() {
+        @Override
+        public void meal(int epochDay, int nameId, int categoryId, int grams, int calories) {
+            addMeal(epochDay, intern(binaryNames.nameOf(nameId)), intern(binaryNames.nameOf(categoryId)), grams, calories);
+        }
+
+        @Override
+        public void steps(int epochDay, int steps) {
+            addSteps(epochDay, steps);
+        }
+
+        @Override
+        public void water(int epochDay, double liters) {
+            addWater(epochDay, liters);
+        }
+    };
+
+    private final EntrySink memory = new EntrySink() {
+        @Override
+        public void meal(long epochDay, String name, String category, double grams, double calories) {
+            addMeal(epochDay, intern(name), intern(category), grams, calories);
+        }
+
+        @Override
+        public void steps(long epochDay, int steps) {
+            addSteps(epochDay, steps);
+        }
+
+        @Override
+        public void water(long epochDay, double liters) {
+            addWater(epochDay, liters);
+        }
+    };
+
+    private MappedLineScanner.LineVisitor lineVisitor(Log log) {
+        return lineVisitor(log, memory);
+    }
+
+    private static MappedLineScanner.LineVisitor lineVisitor(Log log, EntrySink sink) {
+        switch (log) {
+            case MEALS: return line -> acceptMeal(line, sink);
+            case STEPS: return line -> acceptSteps(line, sink);
+            default: return line -> acceptWater(line, sink);
+        }
+    }
+
+    /**
+     * Epoch-day of a log line's date, the first field, or {@link CsvLine#INVALID} if the
+     * line has fewer than {@code minFields} fields or the date is malformed or outside
+     * {@link #MIN_DATE}..{@link #MAX_DATE}.
+     */
+    static long logDay(CsvLine line, int minFields) {
+        long day = (line.fieldCount() < minFields) ? CsvLine.INVALID : line.epochDay(0);
+        return (day < MIN_DAY || day > MAX_DAY) ? CsvLine.INVALID : day;
+    }
+
+    // meals.txt: date,day,mealName,quantityGrams,calories,category
+    private static void acceptMeal(CsvLine line, EntrySink sink) {
+        long day = logDay(line, 5);
+        double calories = (day == CsvLine.INVALID) ? Double.NaN : line.doubleValue(4);
+        if (Double.isNaN(calories)) {
+            line.reject();
+            return;
+        }
+        double grams = line.doubleValue(3);
+        String category = line.fieldCount() > 5 ? line.text(5) : "";
+        sink.meal(day, line.text(2), category, Double.isNaN(grams) ? 0 : grams, calories);
+    }
+
+    // steps.txt: date,day,steps
+    private static void acceptSteps(CsvLine line, EntrySink sink) {
+        long day = logDay(line, 3);
+        long value = (day == CsvLine.INVALID) ? CsvLine.INVALID : line.intValue(2);
+        if (value == CsvLine.INVALID) {
+            line.reject();
+            return;
+        }
+        sink.steps(day, (int) value);
+    }
+
+    // water.txt: date,day,liters (legacy: date,liters)
+    private static void acceptWater(CsvLine line, EntrySink sink) {
+        long day = logDay(line, 2);
+        double liters = (day == CsvLine.INVALID) ? Double.NaN : line.doubleValue(line.fieldCount() >= 3 ? 2 : 1);
+        if (Double.isNaN(liters)) {
+            line.reject();
+            return;
+        }
+        sink.water(day, liters);
+    }
+
+    /*
+     * Parse the text logs on the common fork-join pool: every log at once, and a large
+     * log in line-aligned ranges. Each range is parsed into its own buffer, and the
+     * buffers are folded into memory here in file order, so entry order and per-day
+     * chains are the same as a sequential read. A log that fails to read is left to
+     * readNew, which starts it again from the beginning.
+     */
+    private void loadInParallel() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores < 2) return; // one core gains nothing over readNew
+        Map<Log, List<Future<ParsedRange>>> pending = new HashMap<>();
+        Map<Log, Long> sizes = new HashMap<>();
+        for (Log log : Log.values()) {
+            Feed feed = feed(log);
+            if (feed.useBinary) continue;
+            Path path = feed.text.path;
+            try {
+                if (!Files.exists(path)) continue;
+                long size = Files.size(path);
+                int parts = (int) Math.max(1, Math.min(cores, size / MIN_RANGE_BYTES));
+                long[] bounds = MappedLineScanner.splitLines(path, 0, size, parts);
+                List<Callable<ParsedRange>> tasks = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    tasks.add(() -> {
+                        ParsedRange range = new ParsedRange(log);
+                        MappedLineScanner.scan(path, from, to, range.cursor, lineVisitor(log, range));
+                        return range;
+                    });
+                }
+                List<Future<ParsedRange>> futures = new ArrayList<>();
+                for (Callable<ParsedRange> t : tasks) futures.add(ForkJoinPool.commonPool().submit(t));
+                pending.put(log, futures);
+                sizes.put(log, size);
+            } catch (IOException e) {
+                // ignore, readNew reads this log
+            }
+        }
+        for (Log log : Log.values()) {
+            List<Future<ParsedRange>> futures = pending.get(log);
+            if (futures == null) continue;
+            List<ParsedRange> ranges = new ArrayList<>();
+            try {
+                for (Future<ParsedRange> f : futures) ranges.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                continue; // ignore, readNew reads this log
+            }
+            for (ParsedRange r : ranges) {
+                r.replay(memory);
+                feed(log).rangeLines += r.cursor.lines();
+                feed(log).rangeMalformed += r.cursor.malformed();
+            }
+            try {
+                feed(log).text.skipTo(sizes.get(log));
+            } catch (IOException e) {
+                // ignore, the log is read again on the next sync
+            }
+        }
+    }
+
+    private void addMeal(long day, int nameId, int categoryId, double grams, double calories) {
+        int idx = slot(day);
+        if (idx < 0) return;
+        if (mealCount == mealDay.length) {
+            int cap = Math.max(64, mealCount * 2);
+            mealDay = Arrays.copyOf(mealDay, cap);
+            mealName = Arrays.copyOf(mealName, cap);
+            mealCategory = Arrays.copyOf(mealCategory, cap);
+            mealGrams = Arrays.copyOf(mealGrams, cap);
+            mealCalories = Arrays.copyOf(mealCalories, cap);
+            mealNext = Arrays.copyOf(mealNext, cap);
+        }
+        int i = mealCount++;
+        mealDay[i] = (int) day;
+        mealName[i] = nameId;
+        mealCategory[i] = categoryId;
+        mealGrams[i] = grams;
+        mealCalories[i] = calories;
+        mealNext[i] = 0;
+        if (mealTail[idx] != 0) mealNext[mealTail[idx] - 1] = i + 1; else mealHead[idx] = i + 1;
+        mealTail[idx] = i + 1;
+        dayCalories[idx] += calories;
+        dayMeals[idx]++;
+        int food = food(nameId);
+        foodMeals[food]++;
+        foodCalories[food] += calories;
+        topFoods.offer(food, foodMeals[food]);
+    }
+
+    private void addSteps(long day, int value) {
+        int idx = slot(day);
+        if (idx < 0) return;
+        if (stepsCount == stepsDay.length) {
+            int cap = Math.max(64, stepsCount * 2);
+            stepsDay = Arrays.copyOf(stepsDay, cap);
+            stepsValue = Arrays.copyOf(stepsValue, cap);
+            stepsNext = Arrays.copyOf(stepsNext, cap);
+        }
+        int i = stepsCount++;
+        stepsDay[i] = (int) day;
+        stepsValue[i] = value;
+        stepsNext[i] = 0;
+        if (stepsTail[idx] != 0) stepsNext[stepsTail[idx] - 1] = i + 1; else stepsHead[idx] = i + 1;
+        stepsTail[idx] = i + 1;
+        daySteps[idx] += value;
+    }
+
+    private void addWater(long day, double liters) {
+        int idx = slot(day);
+        if (idx < 0) return;
+        if (waterCount == waterDay.length) {
+            int cap = Math.max(64, waterCount * 2);
+            waterDay = Arrays.copyOf(waterDay, cap);
+            waterLiters = Arrays.copyOf(waterLiters, cap);
+            waterNext = Arrays.copyOf(waterNext, cap);
+        }
+        int i = waterCount++;
+        waterDay[i] = (int) day;
+        waterLiters[i] = liters;
+        waterNext[i] = 0;
+        if (waterTail[idx] != 0) waterNext[waterTail[idx] - 1] = i + 1; else waterHead[idx] = i + 1;
+        waterTail[idx] = i + 1;
+        dayLiters[idx] += liters;
+    }
+
+    // ---- writing ----
+
+    /*
+     * Write a batch of queued lines: one append per log, then the binary mirror. The bytes
+     * and mirror records are taken from memory under the lock and written outside it. While
+     * a log is being written sync() leaves it alone; afterwards only what other programs
+     * appended before our bytes is read, and our own bytes are skipped.
+     */
+    private void writeBatch(List<PendingLine> batch, boolean force) throws IOException {
+        long start = System.nanoTime();
+        List<LogWrite> writes = prepare(batch);
+        try {
+            for (LogWrite w : writes) w.write(force, binaryNames);
+        } finally {
+            finish(writes);
+            WRITE_TIMER.recordSince(start);
+        }
+    }
+
+    private synchronized List<LogWrite> prepare(List<PendingLine> batch) {
+        List<LogWrite> writes = new ArrayList<>();
+        for (Log log : Log.values()) {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            for (PendingLine p : batch) {
+                if (p.log != log) continue;
+                if (p.loads != loads) {
+                    // memory was reloaded from disk before this line reached it
+                    p.first = count(log);
+                    MappedLineScanner.scan(p.bytes, feed(log).cursor, lineVisitor(log));
+                    p.end = count(log);
+                }
+                text.write(p.bytes, 0, p.bytes.length);
+            }
+            if (text.size() == 0) continue;
+
+            Feed feed = feed(log);
+            ParsedRange mirror = null;
+            if (feed.binary.exists()) {
+                mirror = new ParsedRange(log);
+                for (PendingLine p : batch) {
+                    if (p.log != log) continue;
+                    for (int i = p.first; i < p.end; i++) capture(log, mirror, i);
+                }
+            }
+            LogWrite w = new LogWrite(feed, text.toByteArray(), mirror, lineVisitor(log));
+            for (PendingLine p : batch) {
+                if (p.log != log) continue;
+                for (int i = p.first; i < p.end; i++) {
+                    w.minDay = Math.min(w.minDay, day(log, i));
+                    w.maxDay = Math.max(w.maxDay, day(log, i));
+                }
+            }
+            feed.writing++;
+            writes.add(w);
+        }
+        return writes;
+    }
+
+    private synchronized void finish(List<LogWrite> writes) {
+        for (LogWrite w : writes) {
+            w.feed.writing--;
+            try {
+                w.feed.skipOwn(w, binaryVisitor);
+            } catch (IOException e) {
+                // ignore, the log is read again on the next sync
+            }
+        }
+        notifyAll();
+    }
+
+    private long day(Log log, int entry) {
+        switch (log) {
+            case MEALS: return mealDay[entry];
+            case STEPS: return stepsDay[entry];
+            default: return waterDay[entry];
+        }
+    }
+
+    private void capture(Log log, EntrySink sink, int entry) {
+        switch (log) {
+            case MEALS:
+                sink.meal(mealDay[entry], names.get(mealName[entry]), names.get(mealCategory[entry]),
+                        mealGrams[entry], mealCalories[entry]);
+                break;
+            case STEPS:
+                sink.steps(stepsDay[entry], stepsValue[entry]);
+                break;
+            case WATER:
+                sink.water(waterDay[entry], waterLiters[entry]);
+                break;
+        }
+    }
+
+    private int intern(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null) return id;
+        int newId = names.size();
+        names.add(name);
+        nameIds.put(name, newId);
+        return newId;
+    }
+
+    // Food id of an interned meal name, adding the food on first use
+    private int food(int nameId) {
+        if (nameId >= nameFood.length) nameFood = Arrays.copyOf(nameFood, Math.max(64, Math.max(nameId + 1, nameFood.length * 2)));
+        if (nameFood[nameId] != 0) return nameFood[nameId] - 1;
+        String name = names.get(nameId).trim().replaceAll("\\s+", " ");
+        String key = name.toLowerCase(Locale.ROOT);
+        Integer id = foodIds.get(key);
+        if (id == null) {
+            id = foodNames.size();
+            foodNames.add(name);
+            foodIds.put(key, id);
+            if (id == foodMeals.length) {
+                int cap = Math.max(64, id * 2);
+                foodMeals = Arrays.copyOf(foodMeals, cap);
+                foodCalories = Arrays.copyOf(foodCalories, cap);
+            }
+        }
+        nameFood[nameId] = id + 1;
+        return id;
+    }
+
+    private void clear() {
+        loads++;
+        mealCount = 0;
+        Arrays.fill(foodMeals, 0);
+        Arrays.fill(foodCalories, 0);
+        topFoods.clear();
+        stepsCount = 0;
+        waterCount = 0;
+        span = 0;
+        growDays(0, 0);
+        meals.reset();
+        steps.reset();
+        water.reset();
+    }
+
+    // ---- per-day columns ----
+
+    // column index of an epoch-day, or -1 if nothing was logged that day
+    private int index(long day) {
+        long idx = day - baseDay;
+        return (span > 0 && idx >= 0 && idx < span) ? (int) idx : -1;
+    }
+
+    // column index of an epoch-day, growing the columns if needed; -1 outside the date window
+    private int slot(long day) {
+        // text lines are checked when parsed; this catches binary logs written before that
+        if (day < MIN_DAY || day > MAX_DAY) return -1;
+        if (span == 0) {
+            baseDay = day;
+            if (dayCalories.length == 0) growDays(64, 0);
+            span = 1;
+            return 0;
+        }
+        if (day < baseDay) {
+            long shift = baseDay - day;
+            growDays((int) (shift + span), (int) shift);
+            baseDay = day;
+            span += (int) shift;
+            return 0;
+        }
+        long idx = day - baseDay;
+        if (idx >= span) {
+            if (idx >= dayCalories.length) growDays((int) idx + 1, 0);
+            span = (int) idx + 1;
+        }
+        return (int) idx;
+    }
+
+    // Resize the per-day columns to hold at least {@code needed} days, moving data right by {@code shift}
+    private void growDays(int needed, int shift) {
+        int cap = needed == 0 ? 0 : Math.max(dayCalories.length, 64);
+        while (cap < needed) cap *= 2;
+        int keep = Math.min(span, cap - shift);
+        dayCalories = move(dayCalories, cap, shift, keep);
+        dayMeals = move(dayMeals, cap, shift, keep);
+        daySteps = move(daySteps, cap, shift, keep);
+        dayLiters = move(dayLiters, cap, shift, keep);
+        mealHead = move(mealHead, cap, shift, keep);
+        mealTail = move(mealTail, cap, shift, keep);
+        stepsHead = move(stepsHead, cap, shift, keep);
+        stepsTail = move(stepsTail, cap, shift, keep);
+        waterHead = move(waterHead, cap, shift, keep);
+        waterTail = move(waterTail, cap, shift, keep);
+    }
+
+    private static double[] move(double[] col, int cap, int shift, int keep) {
+        double[] out = new double[cap];
+        if (keep > 0) System.arraycopy(col, 0, out, shift, keep);
+        return out;
+    }
+
+    private static int[] move(int[] col, int cap, int shift, int keep) {
+        int[] out = new int[cap];
+        if (keep > 0) System.arraycopy(col, 0, out, shift, keep);
+        return out;
+    }
+
+    private static int countChain(int head, int[] next) {
+        int n = 0;
+        for (int e = head; e != 0; e = next[e - 1]) n++;
+        return n;
+    }
+
+    // ---- formatting ----
+
+    private String formatMeal(int i) {
+        return formatMeal(mealDay[i], names.get(mealName[i]), mealGrams[i], mealCalories[i], names.get(mealCategory[i]));
+    }
+
+    private String formatSteps(int i) {
+        return formatSteps(stepsDay[i], stepsValue[i]);
+    }
+
+    private String formatWater(int i) {
+        return formatWater(waterDay[i], waterLiters[i]);
+    }
+
+    private static String formatMeal(long day, String name, double grams, double calories, String category) {
+        LocalDate d = LocalDate.ofEpochDay(day);
+        return d + "," + dayName(d) + "," + name + "," + formatNumber(grams) + ","
+                + formatNumber(calories) + "," + category;
+    }
+
+    private static String formatSteps(long day, int steps) {
+        LocalDate d = LocalDate.ofEpochDay(day);
+        return d + "," + dayName(d) + "," + steps;
+    }
+
+    private static String formatWater(long day, double liters) {
+        LocalDate d = LocalDate.ofEpochDay(day);
+        return d + "," + dayName(d) + "," + String.format(Locale.ROOT, "%.2f", liters);
+    }
+
+    // Parsed entries dated fromDay..toDay, formatted as the in-memory entries are
+    private static final class FormattedLines implements EntrySink {
+        final List<String> lines = new ArrayList<>();
+        private final long fromDay;
+        private final long toDay;
+
+        FormattedLines(long fromDay, long toDay) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        @Override
+        public void meal(long epochDay, String name, String category, double grams, double calories) {
+            if (epochDay >= fromDay && epochDay <= toDay) lines.add(formatMeal(epochDay, name, grams, calories, category));
+        }
+
+        @Override
+        public void steps(long epochDay, int steps) {
+            if (epochDay >= fromDay && epochDay <= toDay) lines.add(formatSteps(epochDay, steps));
+        }
+
+        @Override
+        public void water(long epochDay, double liters) {
+            if (epochDay >= fromDay && epochDay <= toDay) lines.add(formatWater(epochDay, liters));
+        }
+    }
+
+    private static String dayName(LocalDate d) {
+        return d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+    }
+
+    private static String formatNumber(double v) {
+        return v == Math.rint(v) ? Long.toString((long) v) : Double.toString(v);
+    }
+
+    private Feed feed(Log log) {
+        switch (log) {
+            case MEALS: return meals;
+            case STEPS: return steps;
+            default: return water;
+        }
+    }
+
+    private int count(Log log) {
+        switch (log) {
+            case MEALS: return mealCount;
+            case STEPS: return stepsCount;
+            default: return waterCount;
+        }
+    }
+
+    /**
+     * Formatted entries for one day plus the most recent entries, as read by {@link #snapshot}.
+     */
+    public static final class DaySnapshot {
+        private final LocalDate day;
+        private final List<String> meals;
+        private final List<String> steps;
+        private final List<String> water;
+        private final List<String> recentMeals;
+        private final List<String> recentSteps;
+
+        DaySnapshot(LocalDate day, List<String> meals, List<String> steps, List<String> water,
+                    List<String> recentMeals, List<String> recentSteps) {
+            this.day = day;
+            this.meals = meals;
+            this.steps = steps;
+            this.water = water;
+            this.recentMeals = recentMeals;
+            this.recentSteps = recentSteps;
+        }
+
+        public LocalDate day() { return day; }
+
+        public List<String> meals() { return meals; }
+
+        public List<String> steps() { return steps; }
+
+        public List<String> water() { return water; }
+
+        public List<String> recentMeals() { return recentMeals; }
+
+        public List<String> recentSteps() { return recentSteps; }
+    }
+
+    /**
+     * Meals and total calories for one food over a date range, as returned by {@link #topFoods}.
+     */
+    public static final class FoodTotal {
+        private final String name;
+        private final int meals;
+        private final double calories;
+
+        FoodTotal(String name, int meals, double calories) {
+            this.name = name;
+            this.meals = meals;
+            this.calories = calories;
+        }
+
+        public String name() { return name; }
+
+        public int meals() { return meals; }
+
+        public double calories() { return calories; }
+    }
+
+    /**
+     * Per-day totals for a contiguous date range; days without data are zero.
+     */
+    public static final class DayWindow {
+        private final LocalDate start;
+        private final double[] calories;
+        private final int[] mealCount;
+        private final int[] steps;
+        private final int[] stepsEntries;
+        private final double[] liters;
+        private final int[] waterEntries;
+
+        DayWindow(LocalDate start, int days) {
+            this.start = start;
+            this.calories = new double[days];
+            this.mealCount = new int[days];
+            this.steps = new int[days];
+            this.stepsEntries = new int[days];
+            this.liters = new double[days];
+            this.waterEntries = new int[days];
+        }
+
+        public LocalDate getStart() { return start; }
+
+        public int days() { return calories.length; }
+
+        public double calories(int i) { return calories[i]; }
+
+        public int mealCount(int i) { return mealCount[i]; }
+
+        public int steps(int i) { return steps[i]; }
+
+        public int stepsEntries(int i) { return stepsEntries[i]; }
+
+        public double liters(int i) { return liters[i]; }
+
+        public int waterEntries(int i) { return waterEntries[i]; }
+    }
+
+    // A line waiting for the writer, with the range of entries it was parsed into
+    private static final class PendingLine {
+        final Log log;
+        final byte[] bytes;
+        final long loads;
+        int first;
+        int end;
+
+        PendingLine(Log log, byte[] bytes, int first, int end, long loads) {
+            this.log = log;
+            this.bytes = bytes;
+            this.first = first;
+            this.end = end;
+            this.loads = loads;
+        }
+    }
+
+    // One log, read from its binary form when it has been migrated and from text otherwise
+    private static final class Feed {
+        private final TailSource text;
+        private final BinaryLog binary;
+        private final DateIndex index;
+        // cursor for lines read one at a time; lines read in parallel ranges count separately
+        private final CsvLine cursor = new CsvLine();
+        private long rangeLines;
+        private long rangeMalformed;
+        private boolean useBinary;
+        private long generation;
+        private long records;
+        private int writing; // batches being appended outside the lock; not read meanwhile
+
+        Feed(Path textPath, BinaryLog.Kind kind) {
+            this.text = new TailSource(textPath);
+            this.binary = new BinaryLog(BinaryLog.pathFor(textPath), kind);
+            this.index = DateIndex.of(textPath);
+        }
+
+        void reset() {
+            text.reset();
+            cursor.clearCounts();
+            rangeLines = 0;
+            rangeMalformed = 0;
+            records = 0;
+            useBinary = binary.exists();
+            try {
+                generation = useBinary ? binary.generation() : 0;
+            } catch (IOException e) {
+                useBinary = false;
+            }
+        }
+
+        boolean isStale() {
+            if (binary.exists() != useBinary) return true;
+            if (!useBinary) return text.isStale();
+            try {
+                return binary.generation() != generation || binary.recordCount() < records;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        void readNew(MappedLineScanner.LineVisitor lines, BinaryLog.RecordVisitor visitor) {
+            if (writing > 0) return; // the writer reads up to its own bytes when they land
+            try {
+                if (useBinary) {
+                    records = binary.scan(records, visitor);
+                } else {
+                    text.readNew(cursor, lines);
+                }
+            } catch (IOException e) {
+                // ignore read errors, retry on next sync
+            }
+        }
+
+        // After our own append: read what others appended before it, then skip past ours
+        void skipOwn(LogWrite w, BinaryLog.RecordVisitor visitor) throws IOException {
+            if (w.textEnd > 0) {
+                if (!useBinary) text.readTo(w.textStart, cursor, w.lines);
+                text.skipTo(Math.max(text.offset, w.textEnd));
+            }
+            if (useBinary && w.firstRecord >= 0) {
+                if (w.firstRecord > records) records = binary.scan(records, w.firstRecord, visitor);
+                records = Math.max(records, w.firstRecord + w.mirror.count);
+            }
+        }
+
+        // Lines read from the text log since the last reset, or records from the binary log
+        long lines() {
+            return cursor.lines() + rangeLines + (useBinary ? records : 0);
+        }
+
+        long malformed() {
+            return cursor.malformed() + rangeMalformed;
+        }
+    }
+
+    // How far into an append-only text log we have already read
+    private static final class TailSource {
+        private final Path path;
+        private long offset;
+        private Object fileKey;
+
+        TailSource(Path path) {
+            this.path = path;
+        }
+
+        void reset() {
+            offset = 0;
+            fileKey = null;
+        }
+
+        // true if the file was truncated or swapped since we last read it
+        boolean isStale() {
+            try {
+                if (!Files.exists(path)) return offset > 0;
+                Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                if (fileKey != null && key != null && !fileKey.equals(key)) return true;
+                return Files.size(path) < offset;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        void readNew(CsvLine line, MappedLineScanner.LineVisitor visitor) throws IOException {
+            if (!Files.exists(path)) return;
+            long size = Files.size(path);
+            if (size <= offset) return;
+            fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            MappedLineScanner.scan(path, offset, size, line, visitor);
+            offset = size;
+        }
+
+        // Read bytes [offset, to), leaving later bytes for the next read
+        void readTo(long to, CsvLine line, MappedLineScanner.LineVisitor visitor) throws IOException {
+            if (to <= offset) return;
+            MappedLineScanner.scan(path, offset, to, line, visitor);
+            offset = to;
+        }
+
+        // Mark bytes before offset as read
+        void skipTo(long offset) throws IOException {
+            this.offset = offset;
+            fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        }
+    }
+
+    // One log's share of a write batch, taken from memory under the lock and written outside it
+    private static final class LogWrite {
+        final Feed feed;
+        final byte[] text;
+        final ParsedRange mirror; // entries for the binary log, null if there is none
+        final MappedLineScanner.LineVisitor lines;
+        long textStart;
+        long textEnd;             // where our bytes landed; 0 until written
+        long firstRecord = -1;    // our first binary record, -1 until written
+        long minDay = Long.MAX_VALUE; // span of the entries' days, for the date index
+        long maxDay = Long.MIN_VALUE;
+
+        LogWrite(Feed feed, byte[] text, ParsedRange mirror, MappedLineScanner.LineVisitor lines) {
+            this.feed = feed;
+            this.text = text;
+            this.mirror = mirror;
+            this.lines = lines;
+        }
+
+        void write(boolean force, NameDictionary dictionary) throws IOException {
+            try (FileChannel ch = FileChannel.open(feed.text.path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(text);
+                while (buf.hasRemaining()) ch.write(buf);
+                // in append mode the position is the end of the file, just after our bytes
+                textEnd = ch.position();
+                textStart = textEnd - text.length;
+                if (force) ch.force(false);
+            }
+            feed.index.appended(textStart, textEnd, minDay, maxDay);
+            if (mirror != null) {
+                try (BinaryLog.Appender a = feed.binary.openAppender(false)) {
+                    // set before writing: if the append fails, the next sync sees too few
+                    // records and reloads instead of reading a partial batch twice
+                    firstRecord = a.firstRecord();
+                    mirror.writeTo(a, dictionary);
+                    if (force) a.force();
+                }
+            }
+        }
+    }
+
+    // Entries parsed from one byte range of a log, in file order
+    private static final class ParsedRange implements EntrySink {
+        private final Log log;
+        private final CsvLine cursor = new CsvLine();
+        private int count;
+        private long[] days = new long[256];
+        private double[] first = new double[256];  // grams, steps or liters
+        private double[] second = new double[256]; // meal calories
+        private String[] names = new String[256];
+        private String[] categories = new String[256];
+
+        ParsedRange(Log log) {
+            this.log = log;
+        }
+
+        @Override
+        public void meal(long epochDay, String name, String category, double grams, double calories) {
+            int i = next(epochDay, grams);
+            second[i] = calories;
+            names[i] = name;
+            categories[i] = category;
+        }
+
+        @Override
+        public void steps(long epochDay, int steps) {
+            next(epochDay, steps);
+        }
+
+        @Override
+        public void water(long epochDay, double liters) {
+            next(epochDay, liters);
+        }
+
+        private int next(long epochDay, double value) {
+            if (count == days.length) {
+                int cap = count * 2;
+                days = Arrays.copyOf(days, cap);
+                first = Arrays.copyOf(first, cap);
+                second = Arrays.copyOf(second, cap);
+                names = Arrays.copyOf(names, cap);
+                categories = Arrays.copyOf(categories, cap);
+            }
+            days[count] = epochDay;
+            first[count] = value;
+            return count++;
+        }
+
+        // Append the entries to a binary log, names as ids of the dictionary
+        void writeTo(BinaryLog.Appender a, NameDictionary dictionary) throws IOException {
+            for (int i = 0; i < count; i++) {
+                switch (log) {
+                    case MEALS:
+                        a.meal(days[i], dictionary.idOf(names[i]), dictionary.idOf(categories[i]),
+                                (int) Math.round(first[i]), (int) Math.round(second[i]));
+                        break;
+                    case STEPS:
+                        a.steps(days[i], (int) first[i]);
+                        break;
+                    default:
+                        a.water(days[i], first[i]);
+                        break;
+                }
+            }
+        }
+
+        void replay(EntrySink sink) {
+            for (int i = 0; i < count; i++) {
+                switch (log) {
+                    case MEALS:
+                        sink.meal(days[i], names[i], categories[i], first[i], second[i]);
+                        break;
+                    case STEPS:
+                        sink.steps(days[i], (int) first[i]);
+                        break;
+                    default:
+                        sink.water(days[i], first[i]);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,450 @@
+package fitlife.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Search index over food names for autocomplete and typo-tolerant lookup.
+ *
+ * Names are split into words. The distinct words are kept sorted, so every word starting
+ * with a prefix is one binary search away (a flattened trie), and each word points to the
+ * names that contain it. Misspelt words are found through a bigram index over the same
+ * vocabulary: words sharing enough bigrams with the query word are checked with a bounded
+ * edit distance. A name matches when any query word matches one of its words; results are
+ * ranked by how many query words matched, then by how closely.
+ *
+ * The indexed core is immutable. Names added later sit in a small overlay that is scanned
+ * directly until it is large enough to be folded into a rebuilt core.
+ */
+public class FoodIndex {
+
+    private static final int OVERLAY_LIMIT = 2048;
+
+    // match costs per query word, lower is better
+    private static final int EXACT = 0;
+    private static final int PREFIX = 4;
+    private static final int TYPO = 10; // per edit
+
+    private volatile Core core;
+    private volatile String[] overlay = new String[0];
+
+    public FoodIndex(Collection<String> names) {
+        this.core = new Core(names);
+    }
+
+    /**
+     * Make a name searchable. Cheap: the name joins the overlay until the next rebuild.
+     */
+    public synchronized void add(String name) {
+        if (core.contains(name)) return;
+        for (String s : overlay) {
+            if (s.equals(name)) return;
+        }
+        if (overlay.length >= OVERLAY_LIMIT) {
+            List<String> all = new ArrayList<>(Arrays.asList(core.names));
+            all.addAll(Arrays.asList(overlay));
+            all.add(name);
+            core = new Core(all);
+            overlay = new String[0];
+        } else {
+            String[] grown = Arrays.copyOf(overlay, overlay.length + 1);
+            grown[overlay.length] = name;
+            overlay = grown;
+        }
+    }
+
+    public int size() {
+        return core.names.length + overlay.length;
+    }
+
+    /**
+     * Up to {@code limit} names matching the query, best first. Words of the query match
+     * whole words of a name, words starting with them, or words one or two typos away.
+     */
+    public List<String> search(String query, int limit) {
+        String[] tokens = words(query);
+        List<String> out = new ArrayList<>();
+        if (tokens.length == 0 || limit <= 0) return out;
+
+        // worst match on top so it can be evicted
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        core.search(tokens, best, limit);
+        for (String name : overlay) {
+            Match m = scoreDirectly(name, tokens);
+            if (m != null) offer(best, m, limit);
+        }
+        Match[] ranked = best.toArray(new Match[0]);
+        Arrays.sort(ranked, RANKING);
+        for (Match m : ranked) out.add(m.name);
+        return out;
+    }
+
+    // ---- ranking ----
+
+    private static final class Match {
+        final String name;
+        final int hits;   // query words that matched
+        final int cost;   // summed match cost of those words
+        final int extra;  // words of the name left unmatched
+
+        Match(String name, int hits, int cost, int extra) {
+            this.name = name;
+            this.hits = hits;
+            this.cost = cost;
+            this.extra = extra;
+        }
+    }
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt((Match m) -> -m.hits)
+            .thenComparingInt(m -> m.cost)
+            .thenComparingInt(m -> m.extra)
+            .thenComparingInt(m -> m.name.length())
+            .thenComparing(m -> m.name);
+
+    private static void offer(PriorityQueue<Match> best, Match m, int limit) {
+        best.add(m);
+        if (best.size() > limit) best.poll();
+    }
+
+    // Overlay names are few, so they are compared word by word instead of through the index
+    private static Match scoreDirectly(String name, String[] tokens) {
+        String[] nameWords = words(name);
+        int hits = 0;
+        int cost = 0;
+        for (String t : tokens) {
+            int c = -1;
+            for (String w : nameWords) {
+                int wc = wordCost(t, w);
+                if (wc >= 0 && (c < 0 || wc < c)) c = wc;
+            }
+            if (c >= 0) {
+                hits++;
+                cost += c;
+            }
+        }
+        return hits == 0 ? null : new Match(name, hits, cost, Math.max(0, nameWords.length - hits));
+    }
+
+    private static int wordCost(String token, String word) {
+        if (word.equals(token)) return EXACT;
+        if (word.startsWith(token)) return PREFIX;
+        int k = maxTypos(token);
+        if (k == 0 || Math.abs(word.length() - token.length()) > k) return -1;
+        int d = distance(token, word, k);
+        return d <= k ? TYPO * d : -1;
+    }
+
+    private static int maxTypos(String token) {
+        // very short words are usually still being typed, and codes are not misspelt
+        if (token.length() < 4 || !token.chars().allMatch(Character::isLetter)) return 0;
+        return token.length() < 7 ? 1 : 2;
+    }
+
+    // ---- text helpers ----
+
+    static String[] words(String text) {
+        if (text == null) return new String[0];
+        String lower = text.toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                out.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return out.toArray(new String[0]);
+    }
+
+    // Bigrams of ^word$, packed two chars to an int
+    private static int[] bigrams(String word) {
+        String padded = '^' + word + '$';
+        int[] grams = new int[padded.length() - 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (padded.charAt(i) << 16) | padded.charAt(i + 1);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * Edit distance counting insertions, deletions, substitutions and adjacent swaps;
+     * returns {@code max + 1} as soon as the distance is known to exceed {@code max}.
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > max) return max + 1;
+        int[] prev2 = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= m; j++) {
+                int sub = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + sub);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    v = Math.min(v, prev2[j - 2] + 1);
+                }
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[m];
+    }
+
+    // ---- immutable index ----
+
+    private static final class Core {
+        final String[] names;     // sorted, distinct
+        final int[] wordCounts;   // words per name
+        final int[] nameLengths;
+        final String[] vocab;     // sorted distinct words
+        final int[][] postings;   // word -> ascending name ids
+        final Map<Integer, int[]> bigramPostings = new HashMap<>(); // bigram -> ascending word ids
+        // per-thread work arrays, reused across searches
+        final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(0, 0));
+
+        Core(Collection<String> all) {
+            names = new TreeSet<>(all).toArray(new String[0]);
+            wordCounts = new int[names.length];
+            nameLengths = new int[names.length];
+
+            Map<String, IntList> byWord = new HashMap<>();
+            for (int n = 0; n < names.length; n++) {
+                String[] ws = words(names[n]);
+                wordCounts[n] = ws.length;
+                nameLengths[n] = names[n].length();
+                for (String w : ws) {
+                    IntList list = byWord.computeIfAbsent(w, k -> new IntList());
+                    // names are visited in order, so a repeated word only needs the last id checked
+                    if (list.size == 0 || list.data[list.size - 1] != n) list.add(n);
+                }
+            }
+            vocab = byWord.keySet().toArray(new String[0]);
+            Arrays.sort(vocab);
+            postings = new int[vocab.length][];
+            Map<Integer, IntList> byGram = new HashMap<>();
+            for (int w = 0; w < vocab.length; w++) {
+                postings[w] = byWord.get(vocab[w]).toArray();
+                for (int g : bigrams(vocab[w])) {
+                    byGram.computeIfAbsent(g, k -> new IntList()).add(w);
+                }
+            }
+            for (Map.Entry<Integer, IntList> e : byGram.entrySet()) {
+                bigramPostings.put(e.getKey(), e.getValue().toArray());
+            }
+        }
+
+        boolean contains(String name) {
+            return Arrays.binarySearch(names, name) >= 0;
+        }
+
+        void search(String[] tokens, PriorityQueue<Match> best, int limit) {
+            Scratch sc = scratch.get();
+            if (sc.hits.length < names.length || sc.shared.length < vocab.length) {
+                sc = new Scratch(names.length, vocab.length);
+                scratch.set(sc);
+            }
+            int[] hits = sc.hits;
+            int[] cost = sc.cost;
+            int[] seen = sc.seen;
+            IntList touched = sc.touched;
+            touched.size = 0;
+
+            for (int t = 0; t < tokens.length; t++) {
+                String token = tokens[t];
+                int stamp = sc.nextStamp();
+                // the exact word sorts first among the words it prefixes
+                int from = lowerBound(token);
+                int to = from;
+                while (to < vocab.length && vocab[to].startsWith(token)) {
+                    mark(to, vocab[to].length() == token.length() ? EXACT : PREFIX, stamp, sc);
+                    to++;
+                }
+                // a word that exists as typed is not treated as a typo
+                boolean exact = from < vocab.length && vocab[from].equals(token);
+                int k = exact ? 0 : maxTypos(token);
+                if (k > 0) {
+                    IntList[] byDistance = typos(token, k, from, to, sc.shared);
+                    for (int d = 1; d <= k; d++) {
+                        for (int i = 0; i < byDistance[d].size; i++) {
+                            mark(byDistance[d].data[i], TYPO * d, stamp, sc);
+                        }
+                    }
+                }
+            }
+
+            // rank on packed keys, keeping only the best `limit` in a small max-heap
+            long[] heap = new long[limit];
+            int size = 0;
+            for (int i = 0; i < touched.size; i++) {
+                int n = touched.data[i];
+                long key = rankKey(hits[n], cost[n], wordCounts[n] - hits[n], nameLengths[n], n);
+                hits[n] = 0;
+                cost[n] = 0;
+                if (size < limit) {
+                    heap[size] = key;
+                    siftUp(heap, size++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, size);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int n = (int) (heap[i] & NAME_MASK);
+                int h = wordsMatched(heap[i]);
+                offer(best, new Match(names[n], h, cost(heap[i]), Math.max(0, wordCounts[n] - h)), limit);
+            }
+        }
+
+        // Credit every name containing the word, once per query word
+        private void mark(int word, int c, int stamp, Scratch sc) {
+            for (int n : postings[word]) {
+                if (sc.seen[n] == stamp) continue; // already matched this query word more cheaply
+                sc.seen[n] = stamp;
+                if (sc.hits[n] == 0) sc.touched.add(n);
+                sc.hits[n]++;
+                sc.cost[n] += c;
+            }
+        }
+
+        // Words within k edits of the token, grouped by distance; [skipFrom, skipTo) were prefix matches
+        private IntList[] typos(String token, int k, int skipFrom, int skipTo, int[] shared) {
+            int[] grams = bigrams(token);
+            IntList candidates = new IntList();
+            for (int g : grams) {
+                int[] ws = bigramPostings.get(g);
+                if (ws == null) continue;
+                for (int w : ws) {
+                    if (shared[w]++ == 0) candidates.add(w);
+                }
+            }
+            // an edit changes at most two bigrams, an adjacent swap three
+            int needed = Math.max(1, grams.length - 2 * k - 1);
+            IntList[] out = new IntList[k + 1];
+            for (int d = 0; d <= k; d++) out[d] = new IntList();
+            for (int i = 0; i < candidates.size; i++) {
+                int w = candidates.data[i];
+                int count = shared[w];
+                shared[w] = 0;
+                if (count < needed || (w >= skipFrom && w < skipTo)) continue;
+                int d = distance(token, vocab[w], k);
+                if (d >= 1 && d <= k) out[d].add(w);
+            }
+            return out;
+        }
+
+        private int lowerBound(String key) {
+            int lo = 0;
+            int hi = vocab.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (vocab[mid].compareTo(key) < 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // Ranking order packed into a long, smaller is better:
+    // unmatched query words | cost | extra name words | name length | name id (alphabetical)
+    private static final long NAME_MASK = (1L << 27) - 1;
+
+    private static long rankKey(int hits, int cost, int extra, int length, int name) {
+        return ((long) (63 - Math.min(hits, 63)) << 57)
+                | ((long) Math.min(cost, 16383) << 43)
+                | ((long) Math.min(Math.max(extra, 0), 63) << 37)
+                | ((long) Math.min(length, 1023) << 27)
+                | name;
+    }
+
+    private static int wordsMatched(long key) {
+        return 63 - (int) (key >>> 57);
+    }
+
+    private static int cost(long key) {
+        return (int) ((key >>> 43) & 16383);
+    }
+
+    // max-heap on packed keys
+    private static void siftUp(long[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= heap[i]) break;
+            long t = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int big = (l + 1 < size && heap[l + 1] > heap[l]) ? l + 1 : l;
+            if (heap[i] >= heap[big]) break;
+            long t = heap[big];
+            heap[big] = heap[i];
+            heap[i] = t;
+            i = big;
+        }
+    }
+
+    private static final class Scratch {
+        final int[] hits;
+        final int[] cost;
+        final int[] seen;    // stamp of the last query word that matched each name
+        final int[] shared;  // bigrams shared with the current query word, per vocabulary word
+        final IntList touched = new IntList();
+        int stamp;
+
+        Scratch(int names, int words) {
+            hits = new int[names];
+            cost = new int[names];
+            seen = new int[names];
+            shared = new int[words];
+        }
+
+        int nextStamp() {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
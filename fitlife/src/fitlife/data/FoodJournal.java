@@ -0,0 +1,209 @@
+package fitlife.data;
+
+import fitlife.config.StorageConfig;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calories-per-gram dictionary kept in foods.txt as an append-only journal.
+ *
+ * Each new or changed food appends one {@code name,caloriesPerGram} line and the last line
+ * for a name wins when the journal is replayed, so the file stays readable as the plain
+ * food list it always was. Once superseded lines outnumber live ones the journal is
+ * compacted into one line per food through a temporary file and an atomic rename.
+ *
+ * Journal lines are written behind, like the logs of {@link FitLifeRepository}: an upsert
+ * updates memory and queues the food's name on a {@link WriteBehindQueue}, whose writer
+ * appends the food with its value at write time, so the journal ends on the value memory
+ * holds whatever order concurrent upserts are queued in. Compaction and the appends both
+ * run under the journal lock, so neither loses the other's lines.
+ *
+ * Safe for concurrent use: lookups read a {@link ConcurrentHashMap} without locking.
+ */
+public class FoodJournal {
+
+    // compact once the journal holds this many more lines than there are foods
+    private static final int SLACK_LINES = 256;
+
+    private static final FoodJournal SHARED = new FoodJournal(Paths.get("foods.txt"));
+
+    private final Path path;
+    private final Map<String, Double> foods = new ConcurrentHashMap<>();
+    private final Object journal = new Object();
+    private long lines;  // lines in the journal, live or superseded; guarded by journal
+    private volatile boolean loaded;
+    private volatile FoodIndex index; // built by prepareSearch or the first search
+    private final WriteBehindQueue<String> writes;
+
+    public FoodJournal(Path path) {
+        this.path = path;
+        this.writes = new WriteBehindQueue<>("fitlife-foods-writer", StorageConfig.getDurability(), this::writeBatch);
+    }
+
+    // Journal for foods.txt in the working directory
+    public static FoodJournal get() {
+        return SHARED;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Calories per gram for the food, or null if unknown.
+     */
+    public Double caloriesPerGram(String name) {
+        load();
+        return foods.get(name);
+    }
+
+    /**
+     * Record the calories per gram of a food. Visible to lookups at once; costs one line
+     * queued for the journal, or nothing if the value is unchanged.
+     */
+    public void put(String name, double caloriesPerGram) throws IOException {
+        load();
+        synchronized (journal) {
+            Double old = foods.put(name, caloriesPerGram);
+            if (old == null && index != null) index.add(name);
+            if (old != null && old == caloriesPerGram) return;
+        }
+        // outside the lock: a SYNC submit waits for the writer, which needs it
+        writes.submit(name);
+    }
+
+    /**
+     * Block until every queued journal line is on disk.
+     */
+    public void flush() throws IOException {
+        writes.flush();
+    }
+
+    /**
+     * Known foods matching what the user typed so far, best first; see {@link FoodIndex}.
+     */
+    public List<String> search(String query, int limit) {
+        return index().search(query, limit);
+    }
+
+    /**
+     * Replay the journal and build the search index now rather than on the first
+     * {@link #search}; a UI calls this off its event thread before the user starts typing.
+     */
+    public void prepareSearch() {
+        index();
+    }
+
+    private FoodIndex index() {
+        load();
+        FoodIndex idx = index;
+        if (idx == null) {
+            synchronized (journal) {
+                if (index == null) index = new FoodIndex(foods.keySet());
+                idx = index;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Point-in-time copy of every known food and its calories per gram.
+     */
+    public Map<String, Double> snapshot() {
+        load();
+        synchronized (journal) {
+            return Collections.unmodifiableMap(new HashMap<>(foods));
+        }
+    }
+
+    /**
+     * Rewrite the journal with one line per food.
+     */
+    public void compact() throws IOException {
+        load();
+        synchronized (journal) {
+            writeCompacted();
+        }
+    }
+
+    // On the writer thread: one line per queued food, with the value it has now
+    private void writeBatch(List<String> batch, boolean force) throws IOException {
+        synchronized (journal) {
+            StringBuilder sb = new StringBuilder();
+            for (String name : batch) {
+                sb.append(name).append(',').append(foods.get(name)).append(System.lineSeparator());
+            }
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buf.hasRemaining()) ch.write(buf);
+                if (force) ch.force(false);
+            }
+            lines += batch.size();
+            if (needsCompaction()) writeCompacted();
+        }
+    }
+
+    // caller holds the journal lock
+    private void writeCompacted() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Double> e : foods.entrySet()) {
+                w.write(e.getKey() + "," + e.getValue() + System.lineSeparator());
+            }
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        lines = foods.size();
+    }
+
+    private boolean needsCompaction() {
+        return lines > 2L * foods.size() + SLACK_LINES;
+    }
+
+    // Replay the journal; later lines for a name override earlier ones
+    private void load() {
+        if (loaded) return;
+        synchronized (journal) {
+            if (!loaded) replay();
+        }
+    }
+
+    private void replay() {
+        try {
+            lines = MappedLineScanner.scan(path, line -> {
+                if (line.fieldCount() < 2) return;
+                double cpg = line.doubleValue(1);
+                if (Double.isNaN(cpg)) return; // ignore malformed line
+                foods.put(line.text(0).trim().toLowerCase(Locale.ROOT), cpg);
+            });
+        } catch (IOException e) {
+            // ignore load errors
+        }
+        if (needsCompaction()) {
+            try {
+                writeCompacted();
+            } catch (IOException e) {
+                // compacted again on a later write
+            }
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,322 @@
+package fitlife.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes seeded, plausible history for load and scale tests: meals.txt, steps.txt,
+ * water.txt and foods.txt in the formats the trackers and {@link FoodJournal} write.
+ *
+ * Every user has their own favourite foods, step level and drinking habit. A share of the
+ * water lines can use the legacy two-column format and a share of all lines can be
+ * malformed (bad dates, non-numeric values, missing fields), as found in real logs.
+ * The same seed always gives the same files. Lines are formatted straight into large NIO
+ * buffers and users are written in parallel, so gigabytes take seconds.
+ *
+ * Usage:
+ *   java fitlife.data.HistoryGenerator outDir [-users N] [-years M] [-end yyyy-MM-dd]
+ *       [-seed S] [-malformed rate] [-legacy-water rate]
+ * One user is written to outDir itself, several to outDir/user-0001, outDir/user-0002, ...,
+ * which is the layout of a {@link UserStore} root.
+ */
+public class HistoryGenerator {
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final byte[] EOL = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // name, calories per gram
+    private static final Object[][] FOODS = {
+        {"Oatmeal", 0.68}, {"Banana", 0.89}, {"Apple", 0.52}, {"Rice", 1.30}, {"Chicken Curry", 1.50},
+        {"Dal", 1.16}, {"Chapati", 2.97}, {"Paneer", 2.65}, {"Salad", 0.20}, {"Eggs", 1.55},
+        {"Toast", 2.93}, {"Yogurt", 0.61}, {"Pasta", 1.31}, {"Sandwich", 2.50}, {"Idli", 1.39},
+        {"Dosa", 1.68}, {"Poha", 1.30}, {"Upma", 1.45}, {"Fish", 2.06}, {"Vegetable Soup", 0.35},
+        {"Orange", 0.47}, {"Milk", 0.42}, {"Coffee", 0.02}, {"Tea", 0.01}, {"Biryani", 1.63},
+        {"Noodles", 1.38}, {"Pizza", 2.66}, {"Burger", 2.95}, {"Smoothie", 0.90}, {"Almonds", 5.79},
+        {"Peanut Butter", 5.88}, {"Granola", 4.71}, {"Cornflakes", 3.57}, {"Grilled Chicken", 1.65},
+        {"Tofu", 0.76}, {"Quinoa", 1.20}, {"Sweet Potato", 0.86}, {"Broccoli", 0.34}, {"Samosa", 2.62},
+        {"Khichdi", 1.05}, {"Rajma", 1.40}, {"Chole", 1.64}, {"Aloo Paratha", 2.60}, {"Fruit Salad", 0.50},
+        {"Dark Chocolate", 5.46}, {"Cookies", 4.88}, {"Ice Cream", 2.07}, {"Mango", 0.60}, {"Grapes", 0.69},
+        {"Watermelon", 0.30}, {"Cheese", 4.02}, {"Butter Chicken", 1.50}, {"Fried Rice", 1.63},
+        {"Omelette", 1.54}, {"Pancakes", 2.27}, {"Muesli", 3.67}, {"Protein Bar", 3.50}, {"Lassi", 0.75},
+        {"Soda", 0.41}, {"Chips", 5.36}
+    };
+    private static final String[] CATEGORIES = {"Breakfast", "Lunch", "Snack", "Dinner"};
+
+    private static final byte[][] BAD_DATES = ascii("2024-13-01", "2023-02-30", "20240105", "yesterday", "");
+    private static final byte[][] BAD_NUMBERS = ascii("abc", "12x", "-", "n/a", "");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java fitlife.data.HistoryGenerator outDir [-users N] [-years M] [-end yyyy-MM-dd]"
+                    + " [-seed S] [-malformed rate] [-legacy-water rate]");
+            return;
+        }
+        Path out = Paths.get(args[0]);
+        int users = 1;
+        int years = 1;
+        LocalDate end = LocalDate.now();
+        long seed = 42;
+        double malformed = 0;
+        double legacyWater = 0;
+        for (int a = 1; a < args.length; a++) {
+            switch (args[a]) {
+                case "-users": users = Integer.parseInt(args[++a]); break;
+                case "-years": years = Integer.parseInt(args[++a]); break;
+                case "-end": end = LocalDate.parse(args[++a]); break;
+                case "-seed": seed = Long.parseLong(args[++a]); break;
+                case "-malformed": malformed = Double.parseDouble(args[++a]); break;
+                case "-legacy-water": legacyWater = Double.parseDouble(args[++a]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[a]);
+            }
+        }
+        System.out.println(generate(out, users, years, end, seed, malformed, legacyWater));
+    }
+
+    /**
+     * Write {@code users} users' history, in parallel.
+     * @return summary of what was written
+     */
+    public static String generate(Path out, int users, int years, LocalDate end, long seed,
+                                  double malformedRate, double legacyWaterRate) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        int threads = Math.max(1, Math.min(users, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long[] totals = new long[3]; // lines, malformed lines, bytes
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                Path dir = (users == 1) ? out : out.resolve(String.format(Locale.ROOT, "user-%04d", u + 1));
+                long userSeed = userSeed(seed, u);
+                results.add(pool.submit(() -> writeUser(dir, years, end, userSeed, malformedRate, legacyWaterRate)));
+            }
+            for (Future<long[]> f : results) {
+                long[] r = f.get();
+                for (int i = 0; i < totals.length; i++) totals[i] += r[i];
+            }
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return String.format(Locale.ROOT, "%d user(s) x %d year(s): %d lines (%d malformed), %.1f MB in %.2f s",
+                users, years, totals[0], totals[1], totals[2] / 1e6, seconds);
+    }
+
+    /**
+     * Write one user's history into {@code dir}, ending on {@code end}.
+     * @return {lines, malformed lines, bytes} written
+     */
+    public static long[] writeUser(Path dir, int years, LocalDate end, long seed,
+                                   double malformedRate, double legacyWaterRate) throws IOException {
+        Files.createDirectories(dir);
+        SplittableRandom rnd = new SplittableRandom(seed);
+
+        // this user's habits
+        int[] favourites = new int[12];
+        for (int i = 0; i < favourites.length; i++) favourites[i] = rnd.nextInt(FOODS.length);
+        int stepMean = 4000 + rnd.nextInt(8000);
+        int waterMean = 1 + rnd.nextInt(4); // entries a day
+        double logRate = 0.75 + rnd.nextDouble() * 0.24; // share of days with anything logged
+        boolean[] logged = new boolean[FOODS.length];
+
+        Sink meals = new Sink(dir.resolve("meals.txt"));
+        Sink steps = new Sink(dir.resolve("steps.txt"));
+        Sink water = new Sink(dir.resolve("water.txt"));
+        try (meals; steps; water) {
+            byte[][] names = new byte[FOODS.length][];
+            for (int i = 0; i < FOODS.length; i++) names[i] = ((String) FOODS[i][0]).getBytes(StandardCharsets.UTF_8);
+            byte[][] categories = ascii(CATEGORIES);
+
+            for (LocalDate d = end.minusYears(years).plusDays(1); !d.isAfter(end); d = d.plusDays(1)) {
+                if (rnd.nextDouble() >= logRate) continue;
+                byte[] date = d.toString().getBytes(StandardCharsets.US_ASCII);
+                byte[] day = d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH).getBytes(StandardCharsets.US_ASCII);
+                boolean weekend = d.getDayOfWeek().getValue() >= 6;
+
+                // date,day,mealName,quantityGrams,calories,category
+                for (int m = 0, n = 2 + rnd.nextInt(4); m < n; m++) {
+                    int food = rnd.nextInt(4) == 0 ? rnd.nextInt(FOODS.length)
+                            : favourites[Math.min(favourites.length - 1, (int) Math.abs(gaussian(rnd) * 4))];
+                    int grams = 50 + rnd.nextInt(300);
+                    long calories = Math.round(grams * (Double) FOODS[food][1]);
+                    logged[food] = true;
+                    ByteBuffer b = meals.line();
+                    if (rnd.nextDouble() < malformedRate) {
+                        badLine(b, rnd, date, day, names[food], grams, calories);
+                        meals.malformed();
+                        continue;
+                    }
+                    b.put(date).put((byte) ',').put(day).put((byte) ',').put(names[food]).put((byte) ',');
+                    putLong(b, grams);
+                    b.put((byte) ',');
+                    putLong(b, calories);
+                    b.put((byte) ',').put(categories[Math.min(m, categories.length - 1)]).put(EOL);
+                    meals.done();
+                }
+
+                // date,day,steps
+                if (rnd.nextInt(10) != 0) {
+                    int value = (int) Math.max(0, stepMean * (weekend ? 0.8 : 1.0) + gaussian(rnd) * 2500);
+                    ByteBuffer b = steps.line();
+                    if (rnd.nextDouble() < malformedRate) {
+                        badLine(b, rnd, date, day, null, 0, value);
+                        steps.malformed();
+                    } else {
+                        b.put(date).put((byte) ',').put(day).put((byte) ',');
+                        putLong(b, value);
+                        b.put(EOL);
+                        steps.done();
+                    }
+                }
+
+                // date,day,liters as %.2f, or the legacy date,liters
+                for (int w = 0, n = Math.max(0, waterMean + rnd.nextInt(3) - 1); w < n; w++) {
+                    int centiliters = 25 + rnd.nextInt(76);
+                    ByteBuffer b = water.line();
+                    if (rnd.nextDouble() < malformedRate) {
+                        badLine(b, rnd, date, day, null, 0, centiliters / 100);
+                        water.malformed();
+                        continue;
+                    }
+                    b.put(date).put((byte) ',');
+                    if (rnd.nextDouble() >= legacyWaterRate) b.put(day).put((byte) ',');
+                    putLong(b, centiliters / 100);
+                    b.put((byte) '.').put((byte) ('0' + centiliters / 10 % 10)).put((byte) ('0' + centiliters % 10)).put(EOL);
+                    water.done();
+                }
+            }
+        }
+
+        // foods.txt: every food logged, as CalorieTracker saves them
+        StringBuilder foods = new StringBuilder();
+        for (int f = 0; f < FOODS.length; f++) {
+            if (!logged[f]) continue;
+            foods.append(((String) FOODS[f][0]).toLowerCase(Locale.ROOT)).append(',').append((Double) FOODS[f][1]).append(System.lineSeparator());
+        }
+        Files.writeString(dir.resolve("foods.txt"), foods, StandardCharsets.UTF_8);
+
+        return new long[] {
+            meals.lines + steps.lines + water.lines,
+            meals.malformed + steps.malformed + water.malformed,
+            meals.bytes + steps.bytes + water.bytes + foods.length()
+        };
+    }
+
+    /**
+     * Names of every food the generator logs, as written in meals.txt.
+     */
+    public static List<String> foodNames() {
+        List<String> names = new ArrayList<>();
+        for (Object[] f : FOODS) names.add((String) f[0]);
+        return names;
+    }
+
+    /*
+     * A line the readers must skip: a bad date, a non-numeric value in the field that is
+     * read last, or only the date and day. For meals, name and grams come before the value.
+     */
+    private static void badLine(ByteBuffer b, SplittableRandom rnd, byte[] date, byte[] day, byte[] name, int grams, long value) {
+        int kind = rnd.nextInt(3);
+        b.put(kind == 0 ? BAD_DATES[rnd.nextInt(BAD_DATES.length)] : date).put((byte) ',').put(day);
+        if (kind != 2) {
+            if (name != null) {
+                b.put((byte) ',').put(name).put((byte) ',');
+                putLong(b, grams);
+            }
+            b.put((byte) ',');
+            if (kind == 1) b.put(BAD_NUMBERS[rnd.nextInt(BAD_NUMBERS.length)]); else putLong(b, value);
+        }
+        b.put(EOL);
+    }
+
+    private static void putLong(ByteBuffer b, long v) {
+        if (v < 0) {
+            b.put((byte) '-');
+            v = -v;
+        }
+        if (v >= 10) putLong(b, v / 10);
+        b.put((byte) ('0' + v % 10));
+    }
+
+    // standard normal from two uniforms (Box-Muller)
+    private static double gaussian(SplittableRandom rnd) {
+        return Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+    }
+
+    private static long userSeed(long seed, int user) {
+        long z = seed + (user + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static byte[][] ascii(String... values) {
+        byte[][] out = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) out[i] = values[i].getBytes(StandardCharsets.US_ASCII);
+        return out;
+    }
+
+    // One output file: lines are formatted into a buffer that is written out when nearly full
+    private static final class Sink implements AutoCloseable {
+        private static final int MAX_LINE = 512;
+
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        long lines;
+        long malformed;
+        long bytes;
+
+        Sink(Path path) throws IOException {
+            ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        // Buffer with room for one more line
+        ByteBuffer line() throws IOException {
+            if (buf.remaining() < MAX_LINE) drain();
+            return buf;
+        }
+
+        void done() {
+            lines++;
+        }
+
+        void malformed() {
+            lines++;
+            malformed++;
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            bytes += buf.remaining();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package fitlife.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+/**
+ * Converts between the text logs written by the Savable trackers and the binary logs.
+ *
+ * Every path is resolved in one user's directory, the working directory for the local user
+ * or a profile's partition in the {@link UserStore}.
+ *
+ * Usage:
+ *   java fitlife.data.LogMigrator import [-user id]          meals/steps/water .txt -> .bin
+ *   java fitlife.data.LogMigrator export [dir] [-user id]    .bin -> CSV in the tracker format
+ */
+public class LogMigrator {
+
+    // Import the local user's logs
+    public static String importAll() throws IOException {
+        return importAll(UserData.local());
+    }
+
+    /**
+     * Rebuild a user's meals.bin, steps.bin and water.bin from their text logs.
+     * Malformed lines are skipped and reported in the returned summary.
+     */
+    public static String importAll(UserData user) throws IOException {
+        FitLifeRepository repo = user.repository();
+        repo.flush(); // lines still queued belong in the import
+        StringBuilder sb = new StringBuilder();
+        sb.append(importMeals(repo.textPath(FitLifeRepository.Log.MEALS), repo.binaryLog(FitLifeRepository.Log.MEALS),
+                repo.binaryNames())).append(System.lineSeparator());
+        sb.append(importSteps(repo.textPath(FitLifeRepository.Log.STEPS), repo.binaryLog(FitLifeRepository.Log.STEPS)))
+                .append(System.lineSeparator());
+        sb.append(importWater(repo.textPath(FitLifeRepository.Log.WATER), repo.binaryLog(FitLifeRepository.Log.WATER)));
+        return sb.toString();
+    }
+
+    // Export the local user's binary logs
+    public static void exportAll(Path outDir) throws IOException {
+        exportAll(UserData.local(), outDir);
+    }
+
+    /**
+     * Write a user's binary logs back out as meals.txt, steps.txt and water.txt in {@code outDir}.
+     */
+    public static void exportAll(UserData user, Path outDir) throws IOException {
+        FitLifeRepository repo = user.repository();
+        repo.flush(); // the binary mirror is written with the queued lines
+        Files.createDirectories(outDir);
+        exportMeals(repo.binaryLog(FitLifeRepository.Log.MEALS), repo.binaryNames(), outDir.resolve("meals.txt"));
+        exportSteps(repo.binaryLog(FitLifeRepository.Log.STEPS), outDir.resolve("steps.txt"));
+        exportWater(repo.binaryLog(FitLifeRepository.Log.WATER), outDir.resolve("water.txt"));
+    }
+
+    // meals.txt: date,day,mealName,quantityGrams,calories,category
+    public static String importMeals(Path txt, BinaryLog log, NameDictionary names) throws IOException {
+        CsvLine line = new CsvLine();
+        names.reset();
+        try (BinaryLog.Appender out = log.openAppender(true)) {
+            scan(txt, line, l -> {
+                long day = FitLifeRepository.logDay(l, 5);
+                double grams = (day == CsvLine.INVALID) ? Double.NaN : l.doubleValue(3);
+                double calories = Double.isNaN(grams) ? Double.NaN : l.doubleValue(4);
+                if (Double.isNaN(calories)) {
+                    l.reject();
+                    return;
+                }
+                String category = l.fieldCount() > 5 ? l.text(5) : "";
+                out.meal(day, names.idOf(l.text(2)), names.idOf(category), (int) Math.round(grams), (int) Math.round(calories));
+            });
+        }
+        return summary("meals", line);
+    }
+
+    // steps.txt: date,day,steps
+    public static String importSteps(Path txt, BinaryLog log) throws IOException {
+        CsvLine line = new CsvLine();
+        try (BinaryLog.Appender out = log.openAppender(true)) {
+            scan(txt, line, l -> {
+                long day = FitLifeRepository.logDay(l, 3);
+                long steps = (day == CsvLine.INVALID) ? CsvLine.INVALID : l.intValue(2);
+                if (steps == CsvLine.INVALID) {
+                    l.reject();
+                    return;
+                }
+                out.steps(day, (int) steps);
+            });
+        }
+        return summary("steps", line);
+    }
+
+    // water.txt: date,day,liters (legacy: date,liters)
+    public static String importWater(Path txt, BinaryLog log) throws IOException {
+        CsvLine line = new CsvLine();
+        try (BinaryLog.Appender out = log.openAppender(true)) {
+            scan(txt, line, l -> {
+                long day = FitLifeRepository.logDay(l, 2);
+                double liters = (day == CsvLine.INVALID) ? Double.NaN : l.doubleValue(l.fieldCount() >= 3 ? 2 : 1);
+                if (Double.isNaN(liters)) {
+                    l.reject();
+                    return;
+                }
+                out.water(day, liters);
+            });
+        }
+        return summary("water", line);
+    }
+
+    private interface ImportVisitor {
+        void line(CsvLine line) throws IOException;
+    }
+
+    // Scan a text log, letting the visitor's IOExceptions through
+    private static void scan(Path txt, CsvLine line, ImportVisitor visitor) throws IOException {
+        try {
+            MappedLineScanner.scan(txt, 0, Long.MAX_VALUE, line, l -> {
+                try {
+                    visitor.line(l);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String summary(String log, CsvLine line) {
+        return log + ": " + (line.lines() - line.malformed()) + " imported, " + line.malformed() + " malformed lines skipped";
+    }
+
+    public static void exportMeals(BinaryLog log, NameDictionary names, Path csv) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            log.scan(0, new BinaryLog.RecordVisitor() {
+                @Override
+                public void meal(int epochDay, int nameId, int categoryId, int grams, int calories) {
+                    LocalDate d = LocalDate.ofEpochDay(epochDay);
+                    write(w, d + "," + dayName(d) + "," + names.nameOf(nameId) + "," + grams + ","
+                            + calories + "," + names.nameOf(categoryId));
+                }
+            });
+        } catch (UncheckedWrite e) {
+            throw e.error;
+        }
+    }
+
+    public static void exportSteps(BinaryLog log, Path csv) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            log.scan(0, new BinaryLog.RecordVisitor() {
+                @Override
+                public void steps(int epochDay, int steps) {
+                    LocalDate d = LocalDate.ofEpochDay(epochDay);
+                    write(w, d + "," + dayName(d) + "," + steps);
+                }
+            });
+        } catch (UncheckedWrite e) {
+            throw e.error;
+        }
+    }
+
+    public static void exportWater(BinaryLog log, Path csv) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            log.scan(0, new BinaryLog.RecordVisitor() {
+                @Override
+                public void water(int epochDay, double liters) {
+                    LocalDate d = LocalDate.ofEpochDay(epochDay);
+                    write(w, d + "," + dayName(d) + "," + String.format(Locale.ROOT, "%.2f", liters));
+                }
+            });
+        } catch (UncheckedWrite e) {
+            throw e.error;
+        }
+    }
+
+    private static String dayName(LocalDate d) {
+        return d.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+    }
+
+    private static void write(BufferedWriter w, String line) {
+        try {
+            w.write(line);
+            w.write(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedWrite(e);
+        }
+    }
+
+    // carries an IOException out of a RecordVisitor callback
+    private static class UncheckedWrite extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final IOException error;
+        UncheckedWrite(IOException cause) {
+            super(cause);
+            this.error = cause;
+        }
+    }
+
+    public static void main(String[] args) {
+        String mode = "import";
+        String dir = "export";
+        String userId = null;
+        for (int a = 0, plain = 0; a < args.length; a++) {
+            if (args[a].equals("-user") && a + 1 < args.length) {
+                userId = args[++a];
+            } else if (plain++ == 0) {
+                mode = args[a];
+            } else {
+                dir = args[a];
+            }
+        }
+        try {
+            UserData user = UserData.local();
+            if (userId != null) {
+                UserStore store = UserStore.get();
+                if (!store.exists(userId)) {
+                    System.err.println("No such profile: " + userId);
+                    return;
+                }
+                user = store.user(userId);
+            }
+            if (mode.equals("import")) {
+                System.out.println(importAll(user));
+            } else if (mode.equals("export")) {
+                Path out = Paths.get(dir);
+                exportAll(user, out);
+                System.out.println("Exported CSV logs to " + out.toAbsolutePath());
+            } else {
+                System.err.println("Usage: LogMigrator import [-user id] | export [dir] [-user id]");
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Migration failed: " + ex.getMessage());
+        }
+    }
+}
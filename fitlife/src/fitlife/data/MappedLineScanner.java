@@ -0,0 +1,146 @@
+package fitlife.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Walks a comma separated text log through memory-mapped windows of the file and hands
+ * each line to a {@link LineVisitor} as a reusable {@link CsvLine} cursor. Dates and numbers
+ * are parsed straight from the mapped bytes, so heap use stays flat however large the
+ * file grows.
+ */
+public final class MappedLineScanner {
+
+    // size of each mapped window; lines spanning a window edge are re-mapped in the next one
+    private static final long WINDOW = 64L * 1024 * 1024;
+    public interface LineVisitor {
+        void line(CsvLine line);
+    }
+
+    private MappedLineScanner() {}
+
+    /**
+     * Visit every non-empty line of {@code path}. A missing file has no lines.
+     * @return number of lines visited
+     */
+    public static long scan(Path path, LineVisitor visitor) throws IOException {
+        return scan(path, 0, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visit the non-empty lines in bytes [from, to) of {@code path}. Both bounds should be
+     * line boundaries, e.g. the ranges returned by {@link #splitLines}.
+     * @return number of lines visited
+     */
+    public static long scan(Path path, long from, long to, LineVisitor visitor) throws IOException {
+        return scan(path, from, to, new CsvLine(), visitor);
+    }
+
+    /**
+     * Same, through the given cursor, whose counters then include these lines.
+     * @return number of lines visited
+     */
+    public static long scan(Path path, long from, long to, CsvLine line, LineVisitor visitor) throws IOException {
+        if (!Files.exists(path)) return 0;
+        long before = line.lines();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = Math.min(ch.size(), to);
+            long pos = from;
+            long window = WINDOW;
+            while (pos < size) {
+                long len = Math.min(window, size - pos);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                boolean last = pos + len >= size;
+                int start = visitLines(buf, (int) len, last, line, visitor);
+                if (last) break;
+                if (start == 0) {
+                    // a single line longer than the window: widen it and retry
+                    window *= 2;
+                    continue;
+                }
+                pos += start;
+            }
+        }
+        return line.lines() - before;
+    }
+
+    /**
+     * Visit the non-empty lines of an in-memory chunk of log text, e.g. a line about to be
+     * appended, with the same parsing rules as the file scan.
+     * @return number of lines visited
+     */
+    public static long scan(byte[] bytes, LineVisitor visitor) {
+        return scan(bytes, new CsvLine(), visitor);
+    }
+
+    /**
+     * Same, through the given cursor, whose counters then include these lines.
+     * @return number of lines visited
+     */
+    public static long scan(byte[] bytes, CsvLine line, LineVisitor visitor) {
+        long before = line.lines();
+        visitLines(ByteBuffer.wrap(bytes), bytes.length, true, line, visitor);
+        return line.lines() - before;
+    }
+
+    /**
+     * Cut bytes [from, to) of {@code path} into at most {@code parts} ranges of similar size
+     * that start and end on line boundaries, so each can be scanned on its own.
+     * @return ascending boundaries, the first being from and the last to
+     */
+    public static long[] splitLines(Path path, long from, long to, int parts) throws IOException {
+        long[] bounds = new long[Math.max(1, parts) + 1];
+        int n = 0;
+        bounds[n++] = from;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            for (int i = 1; i < parts; i++) {
+                long target = from + (to - from) * i / parts;
+                if (target <= bounds[n - 1]) continue;
+                long cut = nextLineStart(ch, target, to, buf);
+                if (cut >= to) break;
+                if (cut > bounds[n - 1]) bounds[n++] = cut;
+            }
+        }
+        bounds[n++] = to;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    // Offset just past the first newline at or after pos, or to if there is none before it
+    private static long nextLineStart(FileChannel ch, long pos, long to, ByteBuffer buf) throws IOException {
+        while (pos < to) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), to - pos));
+            int read = ch.read(buf, pos);
+            if (read <= 0) return to;
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return to;
+    }
+
+    // Visit the complete lines in buf[0, limit); returns where the unconsumed tail starts
+    private static int visitLines(ByteBuffer buf, int limit, boolean last, CsvLine line, LineVisitor visitor) {
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == '\n') {
+                if (line.reset(buf, start, i)) visitor.line(line);
+                start = i + 1;
+            }
+        }
+        // final line without a trailing newline
+        if (last && start < limit && line.reset(buf, start, limit)) {
+            visitor.line(line);
+            start = limit;
+        }
+        return start;
+    }
+}
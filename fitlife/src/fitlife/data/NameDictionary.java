@@ -0,0 +1,84 @@
+package fitlife.data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only string dictionary used by the binary logs to store meal and category
+ * names as int ids. One name per line; the id is the line number.
+ */
+public class NameDictionary {
+
+    private final Path path;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private boolean loaded;
+
+    public NameDictionary(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Id for the given name, appending it to the dictionary file on first use.
+     */
+    public synchronized int idOf(String name) throws IOException {
+        load();
+        String key = (name == null) ? "" : name;
+        Integer id = ids.get(key);
+        if (id != null) return id;
+        try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            w.write(key + "\n");
+        }
+        int newId = names.size();
+        names.add(key);
+        ids.put(key, newId);
+        return newId;
+    }
+
+    /**
+     * Name for the given id, or an empty string if unknown.
+     */
+    public synchronized String nameOf(int id) {
+        try {
+            load();
+        } catch (IOException e) {
+            return "";
+        }
+        return (id >= 0 && id < names.size()) ? names.get(id) : "";
+    }
+
+    // Drop the in-memory copy and remove the file (used when a log is rebuilt)
+    synchronized void reset() throws IOException {
+        ids.clear();
+        names.clear();
+        loaded = true;
+        Files.deleteIfExists(path);
+    }
+
+    private void load() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        if (!Files.exists(path)) return;
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                ids.putIfAbsent(line, names.size());
+                names.add(line);
+            }
+        }
+    }
+}
@@ -3,5 +3,10 @@ package fitlife.data;
 import java.io.IOException;
 
 public interface Savable {
+    /**
+     * Persist this entry. Implementations hand the entry to the write-behind queue and
+     * normally return before it reaches the disk; see StorageConfig for the durability
+     * policy and FitLifeRepository#flush to wait for it.
+     */
     void saveToFile() throws IOException;
 }
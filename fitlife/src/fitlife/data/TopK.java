@@ -0,0 +1,126 @@
+package fitlife.data;
+
+import java.util.Arrays;
+
+/**
+ * The k int ids with the highest counts, kept in a bounded min-heap as counts arrive.
+ *
+ * Ids are small non-negative ints such as interned name ids. {@link #offer} takes the
+ * current count of an id: an id already in the heap moves to its new place, a new id
+ * replaces the smallest entry if it beats it. When every change of a count is offered and
+ * counts only grow, the heap always holds the exact top k, at O(log k) per update and
+ * without ever sorting the full set of ids.
+ */
+public final class TopK {
+
+    private final int k;
+    private final int[] ids;
+    private final long[] counts;
+    private int size;
+    // heap slot + 1 of each id, 0 when the id is not in the heap
+    private int[] slot = new int[0];
+
+    public TopK(int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        this.ids = new int[k];
+        this.counts = new long[k];
+    }
+
+    public int capacity() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Record the current count of an id.
+     * @return true if the id is among the top k afterwards
+     */
+    public boolean offer(int id, long count) {
+        if (id >= slot.length) slot = Arrays.copyOf(slot, Math.max(id + 1, slot.length * 2));
+        int s = slot[id] - 1;
+        if (s >= 0) {
+            long old = counts[s];
+            counts[s] = count;
+            if (count > old) siftDown(s); else siftUp(s);
+            return true;
+        }
+        if (size < k) {
+            ids[size] = id;
+            counts[size] = count;
+            slot[id] = size + 1;
+            siftUp(size++);
+            return true;
+        }
+        if (count <= counts[0]) return false;
+        slot[ids[0]] = 0;
+        ids[0] = id;
+        counts[0] = count;
+        slot[id] = 1;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Count last offered for an id in the heap, or -1 if it is not in the heap.
+     */
+    public long count(int id) {
+        return (id < slot.length && slot[id] != 0) ? counts[slot[id] - 1] : -1;
+    }
+
+    /**
+     * Ids in the heap, highest count first; equal counts in ascending id order.
+     */
+    public int[] ids() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> counts[a] != counts[b] ? Long.compare(counts[b], counts[a]) : Integer.compare(ids[a], ids[b]));
+        int[] out = new int[size];
+        for (int i = 0; i < size; i++) out[i] = ids[order[i]];
+        return out;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) slot[ids[i]] = 0;
+        size = 0;
+    }
+
+    // the root holds the smallest count; ties keep the larger id nearer the root so it goes first
+    private boolean less(int a, int b) {
+        return counts[a] != counts[b] ? counts[a] < counts[b] : ids[a] > ids[b];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int small = (l + 1 < size && less(l + 1, l)) ? l + 1 : l;
+            if (!less(small, i)) break;
+            swap(i, small);
+            i = small;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        long c = counts[a];
+        counts[a] = counts[b];
+        counts[b] = c;
+        slot[ids[a]] = a + 1;
+        slot[ids[b]] = b + 1;
+    }
+}
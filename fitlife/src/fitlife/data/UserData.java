@@ -0,0 +1,63 @@
+package fitlife.data;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * One user's partition of the FITLIFE data: their meals, steps and water logs and their
+ * food journal, all kept in a directory no other user shares.
+ *
+ * Trackers, reports and metrics given a UserData read and write only through its
+ * repository and journal, so loading or analyzing one user never touches another's files.
+ * Profiles come from {@link UserStore}; {@link #local()} is the single user whose files are
+ * in the working directory, which is what the code without a user works on.
+ */
+public final class UserData {
+
+    private static final UserData LOCAL = new UserData("", Paths.get(""), FitLifeRepository.get(), FoodJournal.get());
+
+    private final String id;
+    private final Path dir;
+    private final FitLifeRepository repository;
+    private final FoodJournal foods;
+
+    UserData(String id, Path dir) {
+        this(id, dir, new FitLifeRepository(dir), new FoodJournal(dir.resolve("foods.txt")));
+    }
+
+    private UserData(String id, Path dir, FitLifeRepository repository, FoodJournal foods) {
+        this.id = id;
+        this.dir = dir;
+        this.repository = repository;
+        this.foods = foods;
+    }
+
+    // The user whose files are in the working directory
+    public static UserData local() {
+        return LOCAL;
+    }
+
+    /**
+     * User id, or an empty string for {@link #local()}.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    public FitLifeRepository repository() {
+        return repository;
+    }
+
+    public FoodJournal foods() {
+        return foods;
+    }
+
+    @Override
+    public String toString() {
+        return id.isEmpty() ? "(local)" : id;
+    }
+}
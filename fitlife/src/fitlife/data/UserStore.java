@@ -0,0 +1,96 @@
+package fitlife.data;
+
+import fitlife.config.StorageConfig;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * User profiles, each partitioned into a directory of its own under a root directory:
+ * {@code root/<user id>/meals.txt}, {@code steps.txt}, {@code water.txt}, {@code foods.txt}
+ * and their binary logs, in the same formats a single user keeps in the working directory.
+ *
+ * User ids are lowercase letters, digits, '-' and '_', so an id always names exactly one
+ * directory directly under the root, whatever the file system's case rules. Each profile
+ * is opened once and shared: its history is loaded on first use and then kept in memory,
+ * as the working-directory repository is.
+ */
+public class UserStore {
+
+    private static final Pattern ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    private static final UserStore SHARED = new UserStore(StorageConfig.getProfilesDir());
+
+    private final Path root;
+    private final Map<String, UserData> open = new ConcurrentHashMap<>();
+
+    public UserStore(Path root) {
+        this.root = root;
+    }
+
+    // Store over the profiles directory in the environment
+    public static UserStore get() {
+        return SHARED;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * The profile for a user id, creating its directory if it is new.
+     * @throws IllegalArgumentException if the id is not a valid user id
+     */
+    public UserData user(String id) throws IOException {
+        String key = normalize(id);
+        UserData user = open.get(key);
+        if (user != null) return user;
+        Path dir = root.resolve(key);
+        Files.createDirectories(dir);
+        return open.computeIfAbsent(key, k -> new UserData(k, dir));
+    }
+
+    public boolean exists(String id) {
+        String key = normalize(id);
+        return open.containsKey(key) || Files.isDirectory(root.resolve(key));
+    }
+
+    /**
+     * Ids of the profiles on disk, sorted.
+     */
+    public List<String> users() throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                if (ID.matcher(name).matches()) ids.add(name);
+            }
+        } catch (NoSuchFileException e) {
+            // ignore - no profiles yet
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    /**
+     * User id in its stored form: trimmed and lowercase.
+     * @throws IllegalArgumentException if it is not a valid user id
+     */
+    public static String normalize(String id) {
+        String key = (id == null) ? "" : id.trim().toLowerCase(Locale.ROOT);
+        if (!ID.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid user id: '" + id
+                    + "' (use up to 64 letters, digits, '-' or '_')");
+        }
+        return key;
+    }
+}
@@ -0,0 +1,191 @@
+package fitlife.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Background writer that takes items off the caller's thread and hands them to a
+ * {@link BatchWriter} in batches, so a burst of saves costs one open, one write and at
+ * most one fsync per batch instead of one per entry.
+ *
+ * How long {@link #submit} waits is set by the {@link Durability} policy. Whatever the
+ * policy, {@link #flush()} blocks until everything submitted so far is written, and a
+ * shutdown hook flushes the queue before the JVM exits.
+ */
+public class WriteBehindQueue<T> {
+
+    public enum Durability {
+        // return at once; batches are written in the background without fsync
+        BUFFERED,
+        // return at once; every batch is forced to the device after writing
+        FSYNC,
+        // wait until the entry has been written and forced to the device
+        SYNC;
+
+        boolean forces() {
+            return this != BUFFERED;
+        }
+    }
+
+    /**
+     * Writes one batch, in submission order. {@code force} asks for the data to be on the
+     * device before returning.
+     */
+    public interface BatchWriter<T> {
+        void write(List<T> batch, boolean force) throws IOException;
+    }
+
+    private static final int CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH = 4096;
+
+    private final String name;
+    private final BatchWriter<T> writer;
+    private final Durability durability;
+    // full queue blocks submitters, which bounds memory during a bulk import; created with
+    // the writer thread, so a queue that is never written to (an idle profile) costs nothing
+    private BlockingQueue<Entry<T>> pending;
+
+    // numbering and queueing happen under one lock the writer never takes, so the queue is in
+    // sequence order and "written" means every item up to that number is written
+    private final Object enqueue = new Object();
+    private long submitted;  // guarded by enqueue
+
+    private final Object progress = new Object();
+    private long written;    // sequence number of the last item written, guarded by progress
+    private IOException failure; // first failed batch since the last flush, guarded by progress
+
+    private Thread thread;
+
+    // A queued item and its sequence number; a failed batch leaves its error on every entry
+    private static final class Entry<T> {
+        final T item;
+        final long seq;
+        IOException error; // guarded by progress
+
+        Entry(T item, long seq) {
+            this.item = item;
+            this.seq = seq;
+        }
+    }
+
+    public WriteBehindQueue(String name, Durability durability, BatchWriter<T> writer) {
+        this.name = name;
+        this.durability = durability;
+        this.writer = writer;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Queue an item for writing. Under {@link Durability#SYNC} this waits for it to be
+     * written and rethrows the failure if its batch could not be.
+     */
+    public void submit(T item) throws IOException {
+        BlockingQueue<Entry<T>> queue = start();
+        Entry<T> entry;
+        synchronized (enqueue) {
+            entry = new Entry<>(item, submitted + 1);
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while queueing a write", e);
+            }
+            submitted = entry.seq;
+        }
+        if (durability == Durability.SYNC) {
+            synchronized (progress) {
+                awaitWritten(entry.seq);
+                // only this item's own batch counts; the flush report is left for flush()
+                if (entry.error != null) throw entry.error;
+            }
+        }
+    }
+
+    /**
+     * Block until every item submitted so far has been written. A batch that failed since
+     * the last flush is reported here.
+     */
+    public void flush() throws IOException {
+        long target;
+        synchronized (enqueue) {
+            target = submitted;
+        }
+        synchronized (progress) {
+            awaitWritten(target);
+            if (failure != null) {
+                IOException e = failure;
+                failure = null;
+                throw e;
+            }
+        }
+    }
+
+    // caller holds progress
+    private void awaitWritten(long seq) throws IOException {
+        while (written < seq) {
+            try {
+                progress.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for queued writes", e);
+            }
+        }
+    }
+
+    private synchronized BlockingQueue<Entry<T>> start() {
+        if (thread != null) return pending;
+        pending = new ArrayBlockingQueue<>(CAPACITY);
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println(name + ": queued writes were lost: " + e.getMessage());
+            }
+        }, name + "-shutdown"));
+        return pending;
+    }
+
+    private void run() {
+        List<Entry<T>> entries = new ArrayList<>();
+        List<T> batch = new ArrayList<>();
+        while (true) {
+            try {
+                entries.add(pending.take());
+            } catch (InterruptedException e) {
+                continue; // the writer only stops with the JVM
+            }
+            pending.drainTo(entries, MAX_BATCH - 1);
+            for (Entry<T> entry : entries) batch.add(entry.item);
+            IOException error = null;
+            try {
+                writer.write(batch, durability.forces());
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            }
+            synchronized (progress) {
+                written = entries.get(entries.size() - 1).seq;
+                if (error != null) {
+                    for (Entry<T> entry : entries) entry.error = error;
+                    if (failure == null) failure = error;
+                    if (durability != Durability.SYNC) {
+                        System.err.println(name + ": write failed: " + error.getMessage());
+                    }
+                }
+                progress.notifyAll();
+            }
+            entries.clear();
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package fitlife.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count of events, such as lines parsed or answers served from the cache. Increments are
+ * lock-free and spread over cells under contention, so hot paths can count freely.
+ */
+public final class Counter implements CounterMBean {
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long n) {
+        count.add(n);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getCount();
+    }
+}
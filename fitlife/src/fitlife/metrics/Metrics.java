@@ -0,0 +1,79 @@
+package fitlife.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the application's timers and counters. Each metric is created on first use,
+ * usually into a static final field of the class it measures, and published as an MBean
+ * named fitlife:type=Timer,name=... or fitlife:type=Counter,name=..., so JConsole,
+ * VisualVM or any JMX client attached to the running app can watch it.
+ *
+ * Names are "Class.operation", e.g. "CalorieTracker.saveToFile".
+ */
+public final class Metrics {
+
+    private static final String DOMAIN = "fitlife";
+    private static final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Get or create a timer
+     * @param name metric name, letters, digits, '.', '_' and '-' only
+     * @return the timer registered under the name
+     */
+    public static Timer timer(String name) {
+        return get(name, Timer.class, "Timer", Timer::new);
+    }
+
+    /**
+     * Get or create a counter
+     * @param name metric name, letters, digits, '.', '_' and '-' only
+     * @return the counter registered under the name
+     */
+    public static Counter counter(String name) {
+        return get(name, Counter.class, "Counter", Counter::new);
+    }
+
+    /**
+     * Get every metric created so far
+     * @return metrics by name, in name order
+     */
+    public static Map<String, Object> all() {
+        return new TreeMap<>(metrics);
+    }
+
+    private static <T> T get(String name, Class<T> type, String typeName, Function<String, T> factory) {
+        Object metric = metrics.get(name);
+        if (metric == null) {
+            if (!name.matches("[A-Za-z0-9._-]+")) {
+                throw new IllegalArgumentException("Invalid metric name: " + name);
+            }
+            metric = metrics.computeIfAbsent(name, n -> {
+                T created = factory.apply(n);
+                register(typeName, n, created);
+                return created;
+            });
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(name + " is already a " + metric.getClass().getSimpleName());
+        }
+        return type.cast(metric);
+    }
+
+    private static void register(String typeName, String name, Object mbean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(mbean, new ObjectName(DOMAIN + ":type=" + typeName + ",name=" + name));
+        } catch (JMException | SecurityException e) {
+            // ignore - the metric still records, it is just not visible over JMX
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package fitlife.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram of one operation. Recording is lock-free and allocation-free: a sample
+ * increments one bucket, the count and the total, and moves the maximum only when it is
+ * exceeded, so timers can sit on paths that run per line or per request.
+ *
+ * Buckets are log-linear: four per power of two of nanoseconds, so a bucket's midpoint is
+ * within 12.5% of any value in it, from nanoseconds up to days in 248 buckets. Percentiles
+ * read while samples are being recorded are approximate, which is fine for monitoring.
+ */
+public final class Timer implements TimerMBean {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record one sample
+     * @param nanos duration in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.getAndIncrement(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Record the time since a System.nanoTime() reading
+     * @param startNanos value of System.nanoTime() when the operation began
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Estimate a quantile of the recorded samples
+     * @param q quantile between 0 and 1, e.g. 0.99
+     * @return estimated value in nanoseconds, 0 if nothing was recorded
+     */
+    public long quantile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(midpoint(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Values below 4 ns get a bucket each; above that, the exponent and the two bits below
+    // the leading one pick the bucket
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exp - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exp - 2) * SUB_BUCKETS + sub;
+    }
+
+    static long midpoint(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exp - 2);
+        return ((SUB_BUCKETS + sub) << (exp - 2)) + width / 2;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return total.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return (n == 0) ? 0 : total.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return max.get() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return quantile(0.50) / 1e6;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return quantile(0.90) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return quantile(0.99) / 1e6;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return quantile(0.999) / 1e6;
+    }
+
+    /**
+     * Clear all samples. Samples recorded while the reset runs may be partly kept.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+                name, getCount(), getMeanMillis(), getP50Millis(), getP99Millis(), getMaxMillis());
+    }
+}
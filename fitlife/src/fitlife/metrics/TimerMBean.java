@@ -0,0 +1,26 @@
+package fitlife.metrics;
+
+/**
+ * JMX view of a {@link Timer}. Times are in milliseconds; percentiles are estimates from
+ * the timer's buckets, within 12.5% of the true value.
+ */
+public interface TimerMBean {
+
+    long getCount();
+
+    double getTotalMillis();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    void reset();
+}
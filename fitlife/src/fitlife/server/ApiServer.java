@@ -0,0 +1,484 @@
+package fitlife.server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fitlife.ai.AnalysisService;
+import fitlife.ai.MetricsExtractor;
+import fitlife.config.ServerConfig;
+import fitlife.core.CalorieTracker;
+import fitlife.core.StepsTracker;
+import fitlife.core.Tracker;
+import fitlife.core.WaterTracker;
+import fitlife.data.FitLifeRepository;
+import fitlife.data.UserData;
+import fitlife.data.UserStore;
+import fitlife.metrics.Counter;
+import fitlife.metrics.Metrics;
+import fitlife.metrics.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP front end: logging, reports, metrics and AI analysis as JSON endpoints on
+ * the JDK's built-in HttpServer, so phones and scripts can use FITLIFE without the GUI.
+ *
+ * Every endpoint takes an optional {@code user=<id>} query parameter naming a profile in
+ * the {@link UserStore}; without it the files in the working directory are used. Logging to
+ * a new user id creates the profile, reading from an unknown one is a 404.
+ *
+ *   POST /api/meals            {"name", "grams", "calories"?, "category"?, "date"?}
+ *   POST /api/steps            {"steps", "date"?}
+ *   POST /api/water            {"liters", "date"?}
+ *   GET  /api/reports/weekly   ?start=yyyy-MM-dd (default: the last 7 days)
+ *   GET  /api/reports/steps    ?start=yyyy-MM-dd
+ *   GET  /api/reports/water    ?start=yyyy-MM-dd
+ *   GET  /api/metrics          ?from=yyyy-MM-dd&to=yyyy-MM-dd (default: the last 30 days)
+ *   POST /api/analysis         {"query", "from"?, "to"?}
+ *   GET  /api/health
+ *
+ * Dates default to today. Errors come back as {"error": message} with a 4xx or 5xx status.
+ *
+ * Requests are handled on virtual threads where the runtime has them (Java 21+) and on a
+ * fixed pool otherwise. Logging and reports are served from the in-memory repositories;
+ * an analysis is answered when the {@link AnalysisService} completes, without holding a
+ * request thread while the model is asked. Request latency, from the request being
+ * dispatched to the response being written, and error counts are kept in {@link Metrics}.
+ *
+ * Usage:
+ *   java fitlife.server.ApiServer [-port 8080] [-bind 127.0.0.1]
+ * Defaults and the optional bearer token come from {@link ServerConfig}.
+ */
+public class ApiServer {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_QUERY_CHARS = 2000;
+    // guards against a typo such as year 9999 building a huge metrics series
+    private static final int MAX_METRICS_DAYS = 366 * 20;
+
+    private static final Timer REQUEST_TIMER = Metrics.timer("ApiServer.requests");
+    private static final Counter CLIENT_ERRORS = Metrics.counter("ApiServer.clientErrors");
+    private static final Counter SERVER_ERRORS = Metrics.counter("ApiServer.serverErrors");
+
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().serializeSpecialFloatingPointValues().create();
+
+    static {
+        // the JDK server writes headers and body separately; without TCP_NODELAY every small
+        // response waits on the client's delayed ACK, about 40 ms a request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** Status and JSON body of a response; a String body is sent as already-encoded JSON. */
+    private static final class Reply {
+        final int status;
+        final Object body;
+
+        Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** A request that cannot be served, answered with its status and message. */
+    private static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final UserStore users;
+    private final byte[] token;
+
+    /**
+     * @param token bearer token every request must carry, or null for none
+     * @param threads request threads where virtual threads are unavailable
+     */
+    public ApiServer(InetSocketAddress address, UserStore users, String token, int threads) throws IOException {
+        this.users = users;
+        this.token = (token == null) ? null : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        this.executor = newExecutor(threads);
+        this.server = HttpServer.create(address, 1024);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = ServerConfig.getPort();
+        String bind = ServerConfig.getBindAddress();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-port": port = Integer.parseInt(args[++a]); break;
+                case "-bind": bind = args[++a]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[a]);
+            }
+        }
+        ApiServer api = new ApiServer(new InetSocketAddress(bind, port), UserStore.get(),
+                ServerConfig.getToken(), ServerConfig.getThreads());
+        api.start();
+        System.out.println("FitLife API listening on http://" + bind + ":" + api.getPort() + "/api/");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop listening, giving exchanges in progress up to {@code delaySeconds} to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // the bound port, which differs from the requested one if that was 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange ex) {
+        long t0 = System.nanoTime();
+        try {
+            if (token != null && !authorized(ex)) throw new HttpError(401, "Missing or wrong bearer token");
+            Object result = route(ex);
+            if (result instanceof CompletableFuture) {
+                // answered by the thread that completes it; this request thread is free again
+                ((CompletableFuture<?>) result).whenComplete((reply, error) -> {
+                    if (error != null) fail(ex, error);
+                    else respond(ex, (Reply) reply);
+                    REQUEST_TIMER.recordSince(t0);
+                });
+            } else {
+                respond(ex, (Reply) result);
+                REQUEST_TIMER.recordSince(t0);
+            }
+        } catch (Exception e) {
+            fail(ex, e);
+            REQUEST_TIMER.recordSince(t0);
+        }
+    }
+
+    private Object route(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+        switch (path) {
+            case "/api/meals":
+                allow(ex, "POST");
+                return logMeal(user(query, true), body(ex));
+            case "/api/steps":
+                allow(ex, "POST");
+                return logSteps(user(query, true), body(ex));
+            case "/api/water":
+                allow(ex, "POST");
+                return logWater(user(query, true), body(ex));
+            case "/api/reports/weekly":
+                allow(ex, "GET");
+                return weeklySummary(user(query, false), query);
+            case "/api/reports/steps":
+                allow(ex, "GET");
+                return textReport(user(query, false), query, "steps");
+            case "/api/reports/water":
+                allow(ex, "GET");
+                return textReport(user(query, false), query, "water");
+            case "/api/metrics":
+                allow(ex, "GET");
+                return metrics(user(query, false), query);
+            case "/api/analysis":
+                allow(ex, "POST");
+                return analysis(user(query, false), body(ex));
+            case "/api/health":
+                allow(ex, "GET");
+                return new Reply(200, Map.of("status", "ok"));
+            default:
+                throw new HttpError(404, "No such endpoint: " + path);
+        }
+    }
+
+    private Reply logMeal(UserData user, JsonObject body) throws IOException {
+        String name = text(body, "name", true);
+        double grams = number(body, "grams", true);
+        if (!(grams > 0)) throw new HttpError(400, "grams must be positive");
+        double calories = body.has("calories") ? number(body, "calories", true) : 0;
+        if (calories < 0 || calories > Integer.MAX_VALUE) throw new HttpError(400, "calories out of range");
+        String category = text(body, "category", false);
+        LocalDate date = loggedDate(body);
+
+        // without calories they are looked up in the user's known foods
+        CalorieTracker meal = new CalorieTracker(user, date, name, grams, (int) Math.round(calories), category);
+        meal.saveToFile();
+        Map<String, Object> out = entry(user, meal);
+        out.put("name", name);
+        out.put("grams", Math.round(grams));
+        out.put("calories", meal.getCalories());
+        out.put("category", category);
+        return new Reply(201, out);
+    }
+
+    private Reply logSteps(UserData user, JsonObject body) throws IOException {
+        double steps = number(body, "steps", true);
+        if (steps < 0 || steps > Integer.MAX_VALUE || steps != Math.rint(steps)) {
+            throw new HttpError(400, "steps must be a whole number from 0");
+        }
+        StepsTracker entry = new StepsTracker(user, loggedDate(body), (int) steps);
+        entry.saveToFile();
+        Map<String, Object> out = entry(user, entry);
+        out.put("steps", entry.getSteps());
+        return new Reply(201, out);
+    }
+
+    private Reply logWater(UserData user, JsonObject body) throws IOException {
+        double liters = number(body, "liters", true);
+        if (!(liters > 0) || liters > 100) throw new HttpError(400, "liters must be positive");
+        WaterTracker entry = new WaterTracker(user, loggedDate(body), liters);
+        entry.saveToFile();
+        Map<String, Object> out = entry(user, entry);
+        out.put("liters", entry.getWaterAmount());
+        return new Reply(201, out);
+    }
+
+    private Reply weeklySummary(UserData user, Map<String, String> query) {
+        LocalDate start = date(query.get("start"), "start", LocalDate.now().minusDays(6));
+        FitLifeRepository.DayWindow week = user.repository().window(start, 7);
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Map<String, Object> day = new LinkedHashMap<>();
+            day.put("date", start.plusDays(i).toString());
+            day.put("calories", week.calories(i));
+            day.put("meals", week.mealCount(i));
+            day.put("steps", week.steps(i));
+            day.put("water_liters", week.liters(i));
+            days.add(day);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("user", user.getId());
+        out.put("start", start.toString());
+        out.put("end", start.plusDays(6).toString());
+        out.put("days", days);
+        out.put("summary", Tracker.generateWeeklySummary(user, start.toString()));
+        return new Reply(200, out);
+    }
+
+    private Reply textReport(UserData user, Map<String, String> query, String kind) {
+        LocalDate start = date(query.get("start"), "start", LocalDate.now().minusDays(6));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("user", user.getId());
+        out.put("start", start.toString());
+        out.put("end", start.plusDays(6).toString());
+        out.put("report", kind.equals("steps")
+                ? StepsTracker.generateWeeklyReport(user, start.toString())
+                : WaterTracker.generateWeeklyReport(user, start.toString()));
+        return new Reply(200, out);
+    }
+
+    private Reply metrics(UserData user, Map<String, String> query) {
+        LocalDate to = date(query.get("to"), "to", LocalDate.now());
+        LocalDate from = date(query.get("from"), "from", to.minusDays(29));
+        checkRange(from, to);
+        return new Reply(200, MetricsExtractor.extractMetrics(user, from, to).toJson());
+    }
+
+    private CompletableFuture<Reply> analysis(UserData user, JsonObject body) {
+        String question = text(body, "query", true);
+        if (question.length() > MAX_QUERY_CHARS) throw new HttpError(400, "query is longer than " + MAX_QUERY_CHARS + " characters");
+        LocalDate to = body.has("to") ? date(body, "to") : LocalDate.now();
+        LocalDate from = body.has("from") ? date(body, "from") : to.minusDays(29);
+        checkRange(from, to);
+        return AnalysisService.get()
+                .analyze(() -> MetricsExtractor.extractMetrics(user, from, to), question)
+                .thenApply(result -> new Reply(result.containsKey("error") ? 502 : 200, result));
+    }
+
+    // Fields every logged entry reports
+    private static Map<String, Object> entry(UserData user, Tracker tracker) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("user", user.getId());
+        out.put("date", tracker.getDate().toString());
+        out.put("day", tracker.getDay());
+        return out;
+    }
+
+    private UserData user(Map<String, String> query, boolean create) throws IOException {
+        String id = query.get("user");
+        if (id == null || id.isEmpty()) return UserData.local();
+        if (!create && !users.exists(id)) throw new HttpError(404, "Unknown user: " + id);
+        return users.user(id);
+    }
+
+    private boolean authorized(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        return header != null && MessageDigest.isEqual(token, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void allow(HttpExchange ex, String method) {
+        if (method.equals(ex.getRequestMethod())) return;
+        ex.getResponseHeaders().set("Allow", method);
+        throw new HttpError(405, ex.getRequestMethod() + " is not supported here; use " + method);
+    }
+
+    private static JsonObject body(HttpExchange ex) throws IOException {
+        byte[] bytes;
+        try (InputStream in = ex.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) throw new HttpError(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+        JsonElement json;
+        try {
+            json = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+        } catch (JsonParseException e) {
+            throw new HttpError(400, "Request body is not valid JSON");
+        }
+        if (!json.isJsonObject()) throw new HttpError(400, "Request body must be a JSON object");
+        return json.getAsJsonObject();
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(key, value);
+        }
+        return params;
+    }
+
+    // Text field; commas and line breaks would split the CSV line it is saved in
+    private static String text(JsonObject body, String field, boolean required) {
+        JsonElement value = body.get(field);
+        if (value == null || value.isJsonNull()) {
+            if (required) throw new HttpError(400, field + " is required");
+            return "";
+        }
+        if (!value.isJsonPrimitive()) throw new HttpError(400, field + " must be a string");
+        String s = value.getAsString().trim();
+        if (required && s.isEmpty()) throw new HttpError(400, field + " is required");
+        if (s.indexOf(',') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+            throw new HttpError(400, field + " must not contain commas or line breaks");
+        }
+        return s;
+    }
+
+    private static double number(JsonObject body, String field, boolean required) {
+        JsonElement value = body.get(field);
+        if (value == null || value.isJsonNull()) {
+            if (required) throw new HttpError(400, field + " is required");
+            return 0;
+        }
+        try {
+            double d = value.getAsDouble();
+            if (Double.isNaN(d) || Double.isInfinite(d)) throw new NumberFormatException();
+            return d;
+        } catch (NumberFormatException | UnsupportedOperationException | IllegalStateException e) {
+            throw new HttpError(400, field + " must be a number");
+        }
+    }
+
+    private static LocalDate date(JsonObject body, String field) {
+        JsonElement value = body.get(field);
+        if (value == null || value.isJsonNull()) return LocalDate.now();
+        if (!value.isJsonPrimitive()) throw new HttpError(400, field + " must be a date (yyyy-MM-dd)");
+        return date(value.getAsString(), field, LocalDate.now());
+    }
+
+    // Date of a new entry: from 1900 to a year ahead, so a typo cannot land in the logs
+    private static LocalDate loggedDate(JsonObject body) {
+        LocalDate date = date(body, "date");
+        LocalDate latest = LocalDate.now().plusYears(1);
+        if (date.isBefore(FitLifeRepository.MIN_DATE) || date.isAfter(latest)) {
+            throw new HttpError(400, "date must be between " + FitLifeRepository.MIN_DATE + " and " + latest);
+        }
+        return date;
+    }
+
+    private static LocalDate date(String value, String field, LocalDate fallback) {
+        if (value == null || value.trim().isEmpty()) return fallback;
+        try {
+            return LocalDate.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, field + " must be a date (yyyy-MM-dd): " + value);
+        }
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days < 1) throw new HttpError(400, "from must not be after to");
+        if (days > MAX_METRICS_DAYS) throw new HttpError(400, "At most " + MAX_METRICS_DAYS + " days can be analyzed at once");
+    }
+
+    private static void respond(HttpExchange ex, Reply reply) {
+        String json = (reply.body instanceof String) ? (String) reply.body : gson.toJson(reply.body);
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        try {
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(reply.status, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // ignore - the client has gone
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void fail(HttpExchange ex, Throwable error) {
+        Throwable e = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+        int status;
+        if (e instanceof HttpError) {
+            status = ((HttpError) e).status;
+        } else if (e instanceof IllegalArgumentException) {
+            status = 400; // invalid user id
+        } else {
+            status = 500;
+            System.err.println("FitLife API: " + ex.getRequestMethod() + " " + ex.getRequestURI() + " failed: " + e);
+        }
+        (status >= 500 ? SERVER_ERRORS : CLIENT_ERRORS).increment();
+        String message = (e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName();
+        respond(ex, new Reply(status, Map.of("error", message)));
+    }
+
+    // Virtual threads where the runtime has them (Java 21+), otherwise a fixed pool of daemon threads
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "fitlife-http");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}